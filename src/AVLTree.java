@@ -1,38 +1,172 @@
 // AvlTree class
 //
-// CONSTRUCTION: with no initializer
+// CONSTRUCTION: with no initializer, or true for a multiset
 //
 // ******************PUBLIC OPERATIONS*********************
 // void insert( x )       --> Insert x
-// void remove( x )       --> Remove x (unimplemented)
+// boolean isMultiset( )  --> Return true if equal items share a node
+// void remove( x )       --> Remove x
 // boolean contains( x )  --> Return true if x is present
-// boolean remove( x )    --> Return true if x was present
 // Comparable findMin( )  --> Return smallest item
 // Comparable deleteMin( )--> Remove smallest item
 // Comparable deleteMin( )--> Remove smallest item
 // Comparable findMax( )  --> Return largest item
 // boolean isEmpty( )     --> Return true if empty; else false
+// int size( )            --> Return number of items
+// int rank( x )          --> Return number of items smaller than x
+// Comparable select( k ) --> Return item of rank k
+// int countRange( lo, hi )--> Return number of items in [lo, hi]
+// void insertAll( c )    --> Insert every item of a collection
+// AVLTree fromSorted( a )--> Build a tree from sorted items in linear time
+// AVLTree join( l, x, r )--> Concatenate l, x and r (l and r are emptied)
+// AVLTree split( x )     --> Move items >= x into a new tree
+// void union( t )        --> Add all items of t (t is emptied)
+// void intersect( t )    --> Keep only items equal to some item of t
+// void difference( t )   --> Remove items equal to some item of t
+// AVLTree extractRange( lo, hi )--> Move items in [lo, hi] into a new tree
+// Iterator iterator( )  --> Iterate in sorted order
+// Iterator descendingIterator( )--> Iterate in reverse sorted order
+// Iterable subSet( lo, loInc, hi, hiInc )--> Items between lo and hi
+// Iterable headSet( hi, inc )--> Items below hi
+// Iterable tailSet( lo, inc )--> Items above lo
+// Spliterator spliterator( )--> Splits at subtree roots
+// Stream stream( ) / parallelStream( )--> Stream in sorted order
 // void makeEmpty( )      --> Remove all items
 // void printTree( )      --> Print tree in sorted order
 // ******************ERRORS********************************
 // Throws UnderflowException as appropriate
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
 /**
  * Implements an AVL tree.
  * Note that all "matching" is based on the compareTo method.
+ * <p>
+ * By default each item gets its own node, and equal items are kept in
+ * the order they were inserted.  A tree built as a multiset keeps all
+ * equal items in one node instead, in a first-in first-out bucket, so
+ * duplicates add no height, and removing one of several equal items,
+ * including deleteMin on a minimum with company, changes no links.
  * @author Mark Allen Weiss
  */
-public class AVLTree<AnyType extends Comparable<? super AnyType>>
+public class AVLTree<AnyType extends Comparable<? super AnyType>> implements Iterable<AnyType>
 {
     /**
      * Construct the tree.
      */
     public AVLTree( )
     {
+        this( false );
+    }
+
+    /**
+     * Construct the tree.
+     * @param multiset true to keep equal items together in one node.
+     */
+    public AVLTree( boolean multiset )
+    {
+        this.multiset = multiset;
         root = null;
     }
 
-    public AVLTree(AvlNode<AnyType> root){this.root = root;}
+    public AVLTree(AvlNode<AnyType> root){this( root, false );}
+
+    private AVLTree( AvlNode<AnyType> root, boolean multiset )
+    {
+        this.multiset = multiset;
+        this.root = root;
+    }
+
+    /**
+     * Test if equal items share a node.
+     * @return true if the tree was built as a multiset.
+     */
+    public boolean isMultiset( )
+    {
+        return multiset;
+    }
+
+    /**
+     * Build a perfectly balanced tree from items that are already in
+     * sorted order, in linear time.
+     * @param sorted the items, smallest first.
+     * @return a new tree holding the items.
+     * @throws IllegalArgumentException if the items are not sorted.
+     */
+    public static <AnyType extends Comparable<? super AnyType>> AVLTree<AnyType> fromSorted( AnyType[] sorted )
+    {
+        checkSorted( sorted, sorted.length );
+        return new AVLTree<>( AVLTree.<AnyType>buildBalanced( sorted, 0, sorted.length ) );
+    }
+
+    /**
+     * Build a perfectly balanced tree from items that are already in
+     * sorted order, in linear time.
+     * @param sorted iterator over the items, smallest first.
+     * @return a new tree holding the items.
+     * @throws IllegalArgumentException if the items are not sorted.
+     */
+    public static <AnyType extends Comparable<? super AnyType>> AVLTree<AnyType> fromSorted( Iterator<? extends AnyType> sorted )
+    {
+        ArrayList<AnyType> items = new ArrayList<>( );
+        while( sorted.hasNext( ) )
+            items.add( sorted.next( ) );
+        Object[] array = items.toArray( );
+        checkSorted( array, array.length );
+        return new AVLTree<>( AVLTree.<AnyType>buildBalanced( array, 0, array.length ) );
+    }
+
+    /**
+     * Insert every item of a collection; duplicates are allowed.
+     * A small batch is inserted one item at a time.  A large one is sorted
+     * and merged with the current contents, and the tree is rebuilt
+     * balanced, in O( n + m log m ) time for m new items.
+     * @param items the items to insert.
+     */
+    public void insertAll( Collection<? extends AnyType> items )
+    {
+        int m = items.size( );
+        int n = size( );
+        if( m == 0 )
+            return;
+        if( (long) m * ( 32 - Integer.numberOfLeadingZeros( n ) ) < n )
+        {
+            for( AnyType element : items )
+                insert( element );
+            return;
+        }
+
+        Object[] batch = items.toArray( );
+        Arrays.sort( batch );
+        Object[] current = new Object[ n ];
+        fillInOrder( root, current, 0 );
+
+        // Merge, keeping existing items ahead of equal new ones as insert would
+        Object[] merged = new Object[ n + m ];
+        int i = 0, j = 0, k = 0;
+        while( i < n && j < m )
+            merged[ k++ ] = compare( batch[ j ], current[ i ] ) < 0 ? batch[ j++ ] : current[ i++ ];
+        while( i < n )
+            merged[ k++ ] = current[ i++ ];
+        while( j < m )
+            merged[ k++ ] = batch[ j++ ];
+        if( multiset )
+        {
+            AvlNode<AnyType>[] runs = groupRuns( merged );
+            root = linkBalanced( runs, 0, runs.length );
+        }
+        else
+            root = buildBalanced( merged, 0, merged.length );
+    }
 
     /**
      * Insert into the tree; duplicates are ignored.
@@ -40,7 +174,35 @@ public class AVLTree<AnyType extends Comparable<? super AnyType>>
      */
     public void insert( AnyType element )
     {
-        root = insert( element, root );
+        if( root == null )
+        {
+            root = new AvlNode<>( element, null, null );
+            return;
+        }
+
+        AvlNode<AnyType>[] path = pathStack( );
+        int depth = 0;
+        AvlNode<AnyType> node = root;
+        boolean goLeft;
+        do
+        {
+            path[ depth++ ] = node;
+            int compareResult = element.compareTo( node.element );
+            if( compareResult == 0 && multiset )
+            {
+                node.append( element );
+                resize( path, depth, 1 );
+                return;
+            }
+            goLeft = compareResult < 0;
+            node = goLeft ? node.left : node.right;
+        } while( node != null );
+
+        if( goLeft )
+            path[ depth - 1 ].left = new AvlNode<>( element, null, null );
+        else
+            path[ depth - 1 ].right = new AvlNode<>( element, null, null );
+        rebalancePath( path, depth );
     }
 
     /**
@@ -49,39 +211,141 @@ public class AVLTree<AnyType extends Comparable<? super AnyType>>
      */
     public void remove( AnyType element )
     {
-        root = remove( element, root );
+        AvlNode<AnyType>[] path = pathStack( );
+        int depth = 0;
+        AvlNode<AnyType> node = root;
+        while( node != null )
+        {
+            int compareResult = element.compareTo( node.element );
+            if( compareResult == 0 )
+                break;
+            path[ depth++ ] = node;
+            node = compareResult < 0 ? node.left : node.right;
+        }
+        if( node == null )
+            return;   // Item not found; do nothing
+
+        if( node.count( ) > 1 )
+        {
+            // Drop the oldest of the equal items; no links change
+            node.shift( );
+            path[ depth++ ] = node;
+            resize( path, depth, -1 );
+            return;
+        }
+
+        if( node.left != null && node.right != null ) // Two children
+        {
+            // Replace the element with its successor and unlink the successor instead
+            path[ depth++ ] = node;
+            AvlNode<AnyType> successor = node.right;
+            while( successor.left != null )
+            {
+                path[ depth++ ] = successor;
+                successor = successor.left;
+            }
+            node.element = successor.element;
+            node.takeBucket( successor );
+            node = successor;
+        }
+
+        AvlNode<AnyType> child = ( node.left != null ) ? node.left : node.right;
+        replaceChild( depth == 0 ? null : path[ depth - 1 ], node, child );
+        rebalancePath( path, depth );
+    }
+
+    /**
+     * Join two trees around a middle item.  Every item of left must be no
+     * larger than key and every item of right no smaller.  Runs in time
+     * proportional to the difference of the two heights.
+     * @param left the smaller items; emptied by the join.
+     * @param key the middle item.
+     * @param right the larger items; emptied by the join.
+     * @return a tree holding the items of left, key and the items of right.
+     * @throws IllegalArgumentException if the items are out of order.
+     */
+    public static <AnyType extends Comparable<? super AnyType>> AVLTree<AnyType> join(
+            AVLTree<AnyType> left, AnyType key, AVLTree<AnyType> right )
+    {
+        if( !left.isEmpty( ) && left.findMax( ).compareTo( key ) > 0 ||
+            !right.isEmpty( ) && right.findMin( ).compareTo( key ) < 0 )
+            throw new IllegalArgumentException( "Items of left must not exceed key, nor key items of right" );
+        checkSameMode( left, right );
+        AVLTree<AnyType> joined = new AVLTree<>( left.multiset );
+        AvlNode<AnyType> middle = new AvlNode<>( key );
+        if( left.multiset && ( !left.isEmpty( ) && left.findMax( ).compareTo( key ) == 0 ||
+                               !right.isEmpty( ) && right.findMin( ).compareTo( key ) == 0 ) )
+            joined.root = joined.union( joined.union( left.root, middle ), right.root );   // Merge the equal nodes
+        else
+            joined.root = joined.join( left.root, middle, right.root );
+        left.root = null;
+        right.root = null;
+        return joined;
     }
 
+    /**
+     * Split the tree in O( log n ).  Items smaller than key stay in this
+     * tree; the rest are moved into the returned tree.
+     * @param key the item to split at.
+     * @return a tree holding the items greater than or equal to key.
+     */
+    public AVLTree<AnyType> split( AnyType key )
+    {
+        Split<AnyType> parts = new Split<>( );
+        split( root, key, false, parts );
+        root = parts.less;
+        return new AVLTree<>( parts.greater, multiset );
+    }
 
     /**
-     * Internal method to remove from a subtree.
-     * @param element the item to remove.
-     * @param node the node that roots the subtree.
-     * @return the new root of the subtree.
+     * Add every item of other to this tree, keeping duplicates.  The nodes
+     * of other are reused, so other is left empty.  The work follows the
+     * shape of other, so other should be the smaller tree.
+     * @param other the tree to merge in.
      */
-    private AvlNode<AnyType> remove( AnyType element, AvlNode<AnyType> node )
+    public void union( AVLTree<AnyType> other )
     {
-        if( node == null )
-            return node;   // Item not found; do nothing
+        checkSameMode( this, other );
+        root = union( root, other.root );
+        other.root = null;
+    }
+
+    /**
+     * Keep only the items of this tree that are equal to some item of
+     * other.  other is not modified.
+     * @param other the tree to intersect with.
+     */
+    public void intersect( AVLTree<AnyType> other )
+    {
+        root = intersect( root, other.root, true );
+    }
 
-        int compareResult = element.compareTo( node.element );
+    /**
+     * Remove every item of this tree that is equal to some item of other.
+     * other is not modified.
+     * @param other the items to remove.
+     */
+    public void difference( AVLTree<AnyType> other )
+    {
+        root = intersect( root, other.root, false );
+    }
 
-        if( compareResult < 0 )
-            node.left = remove( element, node.left );
-        else if( compareResult > 0 )
-            node.right = remove( element, node.right );
-        else if( node.left != null && node.right != null ) // Two children
-        {
-            node.element = findMin( node.right ).element;
-            node.right = remove( node.element, node.right );
-        }
-        else
-//            node = ( node.left != null ) ? node.left : node.right;
-            if (node.left != null)
-                node = node.left;
-            else
-                node = node.right;
-        return balance( node );
+    /**
+     * Remove the items between lo and hi, both inclusive, in O( log n ).
+     * @param lo the lower bound.
+     * @param hi the upper bound.
+     * @return a tree holding the removed items.
+     */
+    public AVLTree<AnyType> extractRange( AnyType lo, AnyType hi )
+    {
+        if( lo.compareTo( hi ) > 0 )
+            return new AVLTree<>( multiset );
+        Split<AnyType> parts = new Split<>( );
+        split( root, lo, false, parts );
+        AvlNode<AnyType> below = parts.less;
+        split( parts.greater, hi, true, parts );
+        root = concat( below, parts.greater );
+        return new AVLTree<>( parts.less, multiset );
     }
 
     /**
@@ -95,9 +359,30 @@ public class AVLTree<AnyType extends Comparable<? super AnyType>>
         return findMin( root ).element;
     }
 
+    /**
+     * Remove the smallest item from the tree. Nothing is done if the tree is empty.
+     */
     public  void  deleteMin( ){
+        if( root == null )
+            return;
 
-        root = deleteMin(root);
+        AvlNode<AnyType>[] path = pathStack( );
+        int depth = 0;
+        AvlNode<AnyType> node = root;
+        while( node.left != null )
+        {
+            path[ depth++ ] = node;
+            node = node.left;
+        }
+        if( node.count( ) > 1 )
+        {
+            node.shift( );
+            path[ depth++ ] = node;
+            resize( path, depth, -1 );
+            return;
+        }
+        replaceChild( depth == 0 ? null : path[ depth - 1 ], node, node.right );
+        rebalancePath( path, depth );
      }
 
     /**
@@ -138,6 +423,178 @@ public class AVLTree<AnyType extends Comparable<? super AnyType>>
         return root == null;
     }
 
+    /**
+     * Return the number of items in the tree.
+     * @return the size of the tree.
+     */
+    public int size( )
+    {
+        return size( root );
+    }
+
+    /**
+     * Count the items strictly smaller than x.
+     * @param x the item to compare against.
+     * @return the number of items less than x, which is also the rank
+     * x would have if it were inserted ahead of any equal items.
+     */
+    public int rank( AnyType x )
+    {
+        int rank = 0;
+        AvlNode<AnyType> node = root;
+        while( node != null )
+        {
+            if( x.compareTo( node.element ) <= 0 )
+                node = node.left;
+            else
+            {
+                rank += size( node.left ) + node.count( );
+                node = node.right;
+            }
+        }
+        return rank;
+    }
+
+    /**
+     * Find the item of a given rank.
+     * @param k the rank, 0 for the smallest item.
+     * @return the item with exactly k items before it in sorted order.
+     */
+    public AnyType select( int k )
+    {
+        if( k < 0 || k >= size( ) )
+            throw new IndexOutOfBoundsException( "rank " + k + " of " + size( ) );
+        AvlNode<AnyType> node = root;
+        while( true )
+        {
+            int leftSize = size( node.left );
+            if( k < leftSize )
+                node = node.left;
+            else if( k < leftSize + node.count( ) )
+                return node.item( k - leftSize );
+            else
+            {
+                k -= leftSize + node.count( );
+                node = node.right;
+            }
+        }
+    }
+
+    /**
+     * Count the items between lo and hi, both inclusive.
+     * @param lo the lower bound.
+     * @param hi the upper bound.
+     * @return the number of items x with lo <= x <= hi.
+     */
+    public int countRange( AnyType lo, AnyType hi )
+    {
+        if( lo.compareTo( hi ) > 0 )
+            return 0;
+        return countAtMost( hi ) - rank( lo );
+    }
+
+    /**
+     * Count the items less than or equal to x.
+     */
+    private int countAtMost( AnyType x )
+    {
+        int count = 0;
+        AvlNode<AnyType> node = root;
+        while( node != null )
+        {
+            if( x.compareTo( node.element ) < 0 )
+                node = node.left;
+            else
+            {
+                count += size( node.left ) + node.count( );
+                node = node.right;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Iterate over the items in sorted order.  The walk keeps the path to
+     * the current item on a stack allocated once, of the tree's height, and
+     * does not allocate per item.  The tree must not be modified while an
+     * iterator is in use.
+     * @return an iterator over all items, smallest first.
+     */
+    @Override
+    public Iterator<AnyType> iterator( )
+    {
+        return new TreeIterator( false, null, false, null, false );
+    }
+
+    /**
+     * Iterate over the items in reverse sorted order.
+     * @return an iterator over all items, largest first.
+     */
+    public Iterator<AnyType> descendingIterator( )
+    {
+        return new TreeIterator( true, null, false, null, false );
+    }
+
+    /**
+     * A view of the items between two bounds, in sorted order.
+     * @param lo the lower bound.
+     * @param loInclusive true if items equal to lo are included.
+     * @param hi the upper bound.
+     * @param hiInclusive true if items equal to hi are included.
+     * @return an Iterable that walks only the items in range.
+     */
+    public Iterable<AnyType> subSet( AnyType lo, boolean loInclusive, AnyType hi, boolean hiInclusive )
+    {
+        return ( ) -> new TreeIterator( false, lo, loInclusive, hi, hiInclusive );
+    }
+
+    /**
+     * A view of the items below hi, in sorted order.
+     * @param hi the upper bound.
+     * @param inclusive true if items equal to hi are included.
+     */
+    public Iterable<AnyType> headSet( AnyType hi, boolean inclusive )
+    {
+        return ( ) -> new TreeIterator( false, null, false, hi, inclusive );
+    }
+
+    /**
+     * A view of the items above lo, in sorted order.
+     * @param lo the lower bound.
+     * @param inclusive true if items equal to lo are included.
+     */
+    public Iterable<AnyType> tailSet( AnyType lo, boolean inclusive )
+    {
+        return ( ) -> new TreeIterator( false, lo, inclusive, null, false );
+    }
+
+    /**
+     * A sized, sorted Spliterator over the items.  Splitting hands the left
+     * subtree of the current root to the new Spliterator, so a parallel
+     * stream divides the tree along its own shape.
+     */
+    @Override
+    public Spliterator<AnyType> spliterator( )
+    {
+        return new TreeSpliterator( null, root );
+    }
+
+    /**
+     * Return a sequential Stream of the items in sorted order.
+     */
+    public Stream<AnyType> stream( )
+    {
+        return StreamSupport.stream( spliterator( ), false );
+    }
+
+    /**
+     * Return a parallel Stream of the items.
+     */
+    public Stream<AnyType> parallelStream( )
+    {
+        return StreamSupport.stream( spliterator( ), true );
+    }
+
     /**
      * Print the tree contents in sorted order.
      */
@@ -170,7 +627,7 @@ public class AVLTree<AnyType extends Comparable<? super AnyType>>
                 node = doubleLeftRotation( node );
             }
 
-        node.height = Math.max( height( node.left ), height( node.right ) ) + 1;
+        update( node );
         return node;
     }
 
@@ -185,7 +642,8 @@ public class AVLTree<AnyType extends Comparable<? super AnyType>>
             int hl = checkBalance( node.left );
             int hr = checkBalance( node.right );
             if( Math.abs( height( node.left ) - height( node.right ) ) > 1 ||
-                    height( node.left ) != hl || height( node.right ) != hr )
+                    height( node.left ) != hl || height( node.right ) != hr ||
+                    node.size != size( node.left ) + size( node.right ) + node.count( ) )
                 System.out.println( "\n\n***********************OOPS!!" );
         }
 
@@ -194,24 +652,73 @@ public class AVLTree<AnyType extends Comparable<? super AnyType>>
 
 
     /**
-     * Internal method to insert into a subtree.  Duplicates are allowed
-     * @param element the item to insert.
-     * @param node the node that roots the subtree.
-     * @return the new root of the subtree.
+     * Rebalance the nodes on a search path, deepest first, after a child
+     * of path[ depth - 1 ] changed.  Once a subtree comes out of balance()
+     * with the height it had before, nothing above it can be unbalanced, so
+     * from there on only the subtree sizes are updated.
+     * @param path the nodes from the root down, path[ 0 ] being the root.
+     * @param depth the number of nodes on the path.
      */
-    private AvlNode<AnyType> insert( AnyType element, AvlNode<AnyType> node )
+    private void rebalancePath( AvlNode<AnyType>[] path, int depth )
     {
-        if( node == null )
-            return new AvlNode<>( element, null, null );
-
-        int compareResult = element.compareTo( node.element );
+        for( int i = depth - 1; i >= 0; i-- )
+        {
+            AvlNode<AnyType> node = path[ i ];
+            int oldHeight = node.height;
+            AvlNode<AnyType> balanced = balance( node );
+            if( balanced != node )
+                replaceChild( i == 0 ? null : path[ i - 1 ], node, balanced );
+            if( balanced.height == oldHeight )
+            {
+                for( i--; i >= 0; i-- )
+                    path[ i ].size = size( path[ i ].left ) + size( path[ i ].right ) + path[ i ].count( );
+                break;
+            }
+        }
+    }
 
-        if( compareResult < 0 )
-            node.left = insert( element, node.left );
+    /**
+     * Make replacement take the place of child under parent, or of the root
+     * if parent is null.
+     */
+    private void replaceChild( AvlNode<AnyType> parent, AvlNode<AnyType> child, AvlNode<AnyType> replacement )
+    {
+        if( parent == null )
+            root = replacement;
+        else if( parent.left == child )
+            parent.left = replacement;
         else
-            node.right = insert( element, node.right );
+            parent.right = replacement;
+    }
 
-        return balance( node );
+    /**
+     * Add delta to the size of every node on a search path, after an item
+     * was added to or dropped from the bucket of path[ depth - 1 ], which
+     * is included.
+     */
+    private void resize( AvlNode<AnyType>[] path, int depth, int delta )
+    {
+        for( int i = 0; i < depth; i++ )
+            path[ i ].size += delta;
+    }
+
+    /**
+     * Return a stack large enough to hold any search path in the tree.
+     * An AVL tree of n nodes is less than 1.45 log2( n + 2 ) high, so the
+     * stack is reused and only grows with the tree.
+     */
+    private AvlNode<AnyType>[] pathStack( )
+    {
+        int needed = height( root ) + 2;
+        if( pathStack.length < needed )
+            pathStack = newPath( Math.max( needed, pathStack.length * 2 ) );
+        return pathStack;
+    }
+
+    @SuppressWarnings( { "unchecked", "rawtypes" } )
+    private static <AnyType> AvlNode<AnyType>[] newPath( int length )
+    {
+        return ( AvlNode<AnyType>[] ) new AvlNode[ length ];
     }
 
     /**
@@ -229,17 +736,6 @@ public class AVLTree<AnyType extends Comparable<? super AnyType>>
         return node;
     }
 
-    /**
-     * Remove smallest item
-     * @param node
-     * @return AnyType
-     */
-        private AvlNode<AnyType> deleteMin(AvlNode<AnyType> node){
-            if (node == null){return node;}
-            if (node.left == null){ return balance(node.right); }
-            node.left = deleteMin(node.left);
-            return balance(node); }
-
     /**
      * Internal method to find the largest item in a subtree.
      * @param node the node that roots the tree.
@@ -287,11 +783,236 @@ public class AVLTree<AnyType extends Comparable<? super AnyType>>
         if( node != null )
         {
             printTree( node.right, indent+"   " );//" --");
-            System.out.println( indent+ node.element + "("+ node.height  +")" );
+            System.out.println( indent+ node.element + ( node.count( ) > 1 ? " x" + node.count( ) : "" ) + "("+ node.height  +")" );
             printTree( node.left, indent+"   " );//" --");
         }
     }
 
+    /**
+     * Internal method to join two subtrees around node, whose children are
+     * overwritten.  Items of left must not exceed node, nor node items of right.
+     * @return the root of the joined subtree.
+     */
+    private AvlNode<AnyType> join( AvlNode<AnyType> left, AvlNode<AnyType> node, AvlNode<AnyType> right )
+    {
+        if( height( left ) > height( right ) + ALLOWED_IMBALANCE )
+        {
+            // Descend the right spine of left to a subtree as high as right
+            left.right = join( left.right, node, right );
+            return balance( left );
+        }
+        if( height( right ) > height( left ) + ALLOWED_IMBALANCE )
+        {
+            right.left = join( left, node, right.left );
+            return balance( right );
+        }
+        node.left = left;
+        node.right = right;
+        update( node );
+        return node;
+    }
+
+    /**
+     * Internal method to concatenate two subtrees whose items are in order.
+     * @return the root of the concatenated subtree.
+     */
+    private AvlNode<AnyType> concat( AvlNode<AnyType> left, AvlNode<AnyType> right )
+    {
+        if( left == null )
+            return right;
+        if( right == null )
+            return left;
+        Split<AnyType> parts = new Split<>( );
+        AvlNode<AnyType> rest = removeMax( left, parts );
+        return join( rest, parts.less, right );
+    }
+
+    /**
+     * Internal method to unlink the largest node of a subtree.
+     * @param removed receives the unlinked node in its less field.
+     * @return the new root of the subtree.
+     */
+    private AvlNode<AnyType> removeMax( AvlNode<AnyType> node, Split<AnyType> removed )
+    {
+        if( node.right == null )
+        {
+            removed.less = node;
+            return node.left;
+        }
+        node.right = removeMax( node.right, removed );
+        return balance( node );
+    }
+
+    /**
+     * Internal method to split a subtree around key.  Items smaller than
+     * key go to parts.less and larger ones to parts.greater; items equal to
+     * key go to parts.less if equalGoesLeft and to parts.greater otherwise.
+     */
+    private void split( AvlNode<AnyType> node, AnyType key, boolean equalGoesLeft, Split<AnyType> parts )
+    {
+        if( node == null )
+        {
+            parts.less = null;
+            parts.greater = null;
+            return;
+        }
+        int compareResult = key.compareTo( node.element );
+        AvlNode<AnyType> left = node.left;
+        AvlNode<AnyType> right = node.right;
+        if( compareResult > 0 || ( compareResult == 0 && equalGoesLeft ) )
+        {
+            split( right, key, equalGoesLeft, parts );
+            parts.less = join( left, node, parts.less );
+        }
+        else
+        {
+            split( left, key, equalGoesLeft, parts );
+            parts.greater = join( parts.greater, node, right );
+        }
+    }
+
+    /**
+     * Internal method to merge two subtrees, reusing the nodes of both.
+     * @return the root of the merged subtree.
+     */
+    private AvlNode<AnyType> union( AvlNode<AnyType> node, AvlNode<AnyType> other )
+    {
+        if( other == null )
+            return node;
+        if( node == null )
+            return other;
+        Split<AnyType> parts = new Split<>( );
+        split( node, other.element, false, parts );
+        AvlNode<AnyType> less = parts.less;
+        AvlNode<AnyType> greater = parts.greater;
+        AvlNode<AnyType> middle = other;
+        if( multiset )
+        {
+            // A node of this tree equal to other takes other's items after its own
+            split( greater, other.element, true, parts );
+            if( parts.less != null )
+            {
+                middle = parts.less;
+                middle.appendAll( other );
+            }
+            greater = parts.greater;
+        }
+        AvlNode<AnyType> otherLeft = other.left;
+        AvlNode<AnyType> otherRight = other.right;
+        AvlNode<AnyType> left = union( less, otherLeft );
+        return join( left, middle, union( greater, otherRight ) );
+    }
+
+    /**
+     * Internal method to keep (if keepMatches) or drop (otherwise) the items
+     * of a subtree that are equal to some item in the subtree other.
+     * @return the root of the filtered subtree.
+     */
+    private AvlNode<AnyType> intersect( AvlNode<AnyType> node, AvlNode<AnyType> other, boolean keepMatches )
+    {
+        if( node == null || other == null )
+            return keepMatches ? null : node;
+        Split<AnyType> parts = new Split<>( );
+        split( node, other.element, false, parts );
+        AvlNode<AnyType> less = parts.less;
+        split( parts.greater, other.element, true, parts );
+        AvlNode<AnyType> equal = parts.less;
+        AvlNode<AnyType> greater = parts.greater;
+
+        AvlNode<AnyType> left = intersect( less, other.left, keepMatches );
+        AvlNode<AnyType> right = intersect( greater, other.right, keepMatches );
+        if( keepMatches )
+            return concat( concat( left, equal ), right );
+        return concat( left, right );
+    }
+
+    /**
+     * Build a perfectly balanced subtree from sorted[ from .. to-1 ].
+     * @return the root of the subtree, or null if the range is empty.
+     */
+    @SuppressWarnings( "unchecked" )
+    private static <AnyType> AvlNode<AnyType> buildBalanced( Object[] sorted, int from, int to )
+    {
+        if( from >= to )
+            return null;
+        int middle = ( from + to ) >>> 1;
+        AvlNode<AnyType> node = new AvlNode<>( (AnyType) sorted[ middle ] );
+        node.left = buildBalanced( sorted, from, middle );
+        node.right = buildBalanced( sorted, middle + 1, to );
+        node.height = Math.max( node.left == null ? -1 : node.left.height,
+                                node.right == null ? -1 : node.right.height ) + 1;
+        node.size = to - from;
+        return node;
+    }
+
+    /**
+     * Make one node for each run of equal items in sorted, keeping their order.
+     */
+    @SuppressWarnings( "unchecked" )
+    private static <AnyType> AvlNode<AnyType>[] groupRuns( Object[] sorted )
+    {
+        AvlNode<AnyType>[] runs = newPath( sorted.length );
+        int count = 0;
+        for( int i = 0; i < sorted.length; i++ )
+            if( count > 0 && compare( runs[ count - 1 ].element, sorted[ i ] ) == 0 )
+                runs[ count - 1 ].append( (AnyType) sorted[ i ] );
+            else
+                runs[ count++ ] = new AvlNode<>( (AnyType) sorted[ i ] );
+        return Arrays.copyOf( runs, count );
+    }
+
+    /**
+     * Link nodes[ from .. to-1 ], which are in sorted order, into a
+     * perfectly balanced subtree.
+     * @return the root of the subtree, or null if the range is empty.
+     */
+    private AvlNode<AnyType> linkBalanced( AvlNode<AnyType>[] nodes, int from, int to )
+    {
+        if( from >= to )
+            return null;
+        int middle = ( from + to ) >>> 1;
+        AvlNode<AnyType> node = nodes[ middle ];
+        node.left = linkBalanced( nodes, from, middle );
+        node.right = linkBalanced( nodes, middle + 1, to );
+        update( node );
+        return node;
+    }
+
+    private static void checkSameMode( AVLTree<?> a, AVLTree<?> b )
+    {
+        if( a.multiset != b.multiset )
+            throw new IllegalArgumentException( "Cannot combine a multiset tree with a plain one" );
+    }
+
+    /**
+     * Copy the subtree rooted at node into out in sorted order.
+     * @return the index after the last item written.
+     */
+    private static int fillInOrder( AvlNode<?> node, Object[] out, int index )
+    {
+        while( node != null )
+        {
+            index = fillInOrder( node.left, out, index );
+            for( int i = 0; i < node.count( ); i++ )
+                out[ index++ ] = node.item( i );
+            node = node.right;
+        }
+        return index;
+    }
+
+    private static void checkSorted( Object[] items, int length )
+    {
+        for( int i = 1; i < length; i++ )
+            if( compare( items[ i - 1 ], items[ i ] ) > 0 )
+                throw new IllegalArgumentException( "Items are not in sorted order at index " + i );
+    }
+
+    @SuppressWarnings( "unchecked" )
+    private static int compare( Object a, Object b )
+    {
+        return ( (Comparable<Object>) a ).compareTo( b );
+    }
+
     /**
      * Return the height of node t, or -1, if null.
      */
@@ -300,33 +1021,50 @@ public class AVLTree<AnyType extends Comparable<? super AnyType>>
         return node.height;
     }
 
+    /**
+     * Return the number of items in the subtree rooted at node, or 0 if null.
+     */
+    private int size( AvlNode<AnyType> node )
+    {   if (node==null) return 0;
+        return node.size;
+    }
+
+    /**
+     * Recompute the height and size of node from its children.
+     */
+    private void update( AvlNode<AnyType> node )
+    {
+        node.height = Math.max( height( node.left ), height( node.right ) ) + 1;
+        node.size = size( node.left ) + size( node.right ) + node.count( );
+    }
+
     /**
      * Rotate binary tree node with left child.
      * For AVL trees, this is a single rotation for case 1.
-     * Update heights, then return new root.
+     * Update heights and sizes, then return new root.
      */
     private AvlNode<AnyType> rightRotation(AvlNode<AnyType> node )
     {
         AvlNode<AnyType> theLeft = node.left;
         node.left = theLeft.right;
         theLeft.right = node;
-        node.height = Math.max( height( node.left ), height( node.right ) ) + 1;
-        theLeft.height = Math.max( height( theLeft.left ), node.height ) + 1;
+        update( node );
+        update( theLeft );
         return theLeft;
     }
 
     /**
      * Rotate binary tree node with right child.
      * For AVL trees, this is a single rotation for case 4.
-     * Update heights, then return new root.
+     * Update heights and sizes, then return new root.
      */
     private AvlNode<AnyType> leftRotation(AvlNode<AnyType> node )
     {
         AvlNode<AnyType> theRight = node.right;
         node.right = theRight.left;
         theRight.left = node;
-        node.height = Math.max( height( node.left ), height( node.right ) ) + 1;
-        theRight.height = Math.max( height( theRight.right ), node.height ) + 1;
+        update( node );
+        update( theRight );
         return theRight;
     }
 
@@ -334,7 +1072,7 @@ public class AVLTree<AnyType extends Comparable<? super AnyType>>
      * Double rotate binary tree node: first left child
      * with its right child; then node k3 with new left child.
      * For AVL trees, this is a double rotation for case 2.
-     * Update heights, then return new root.
+     * Update heights and sizes, then return new root.
      */
     private AvlNode<AnyType> doubleRightRotation( AvlNode<AnyType> node )
     {
@@ -347,7 +1085,7 @@ public class AVLTree<AnyType extends Comparable<? super AnyType>>
      * Double rotate binary tree node: first right child
      * with its left child; then node k1 with new right child.
      * For AVL trees, this is a double rotation for case 3.
-     * Update heights, then return new root.
+     * Update heights and sizes, then return new root.
      */
     private AvlNode<AnyType> doubleLeftRotation(AvlNode<AnyType> node )
     {
@@ -355,6 +1093,206 @@ public class AVLTree<AnyType extends Comparable<? super AnyType>>
         return leftRotation( node );
     }
 
+    /**
+     * In-order walk, in either direction, of the items within optional
+     * bounds.  A null bound means the range is open on that side.  The
+     * items of a multiset node come oldest first, or newest first when
+     * descending.
+     */
+    private class TreeIterator implements Iterator<AnyType>
+    {
+        private final boolean descending;
+        private final AnyType lo, hi;
+        private final boolean loInclusive, hiInclusive;
+        private final AvlNode<AnyType>[] stack;
+        private int top;
+        private AvlNode<AnyType> bucket;    // node whose remaining items come next
+        private int bucketIndex;            // how many of them were returned
+
+        /**
+         * Ascending walk of one subtree.
+         */
+        TreeIterator( AvlNode<AnyType> subtree )
+        {
+            this.descending = false;
+            this.lo = null;
+            this.loInclusive = false;
+            this.hi = null;
+            this.hiInclusive = false;
+            this.stack = newPath( height( subtree ) + 1 );
+            pushSpine( subtree );
+        }
+
+        TreeIterator( boolean descending, AnyType lo, boolean loInclusive, AnyType hi, boolean hiInclusive )
+        {
+            this.descending = descending;
+            this.lo = lo;
+            this.loInclusive = loInclusive;
+            this.hi = hi;
+            this.hiInclusive = hiInclusive;
+            this.stack = newPath( height( root ) + 1 );
+            pushSpine( root );
+        }
+
+        @Override
+        public boolean hasNext( )
+        {
+            if( bucket != null )
+                return true;
+            if( top > 0 && beyondEnd( stack[ top - 1 ].element ) )
+                top = 0;
+            return top > 0;
+        }
+
+        @Override
+        public AnyType next( )
+        {
+            if( !hasNext( ) )
+                throw new NoSuchElementException( );
+            if( bucket == null )
+            {
+                bucket = stack[ --top ];
+                bucketIndex = 0;
+                pushSpine( descending ? bucket.left : bucket.right );
+            }
+            AvlNode<AnyType> node = bucket;
+            int count = node.count( );
+            int i = bucketIndex++;
+            if( bucketIndex == count )
+                bucket = null;
+            return node.item( descending ? count - 1 - i : i );
+        }
+
+        /**
+         * Push the path from node towards the first item in range, skipping
+         * subtrees that lie wholly before the start of the range.
+         */
+        private void pushSpine( AvlNode<AnyType> node )
+        {
+            while( node != null )
+            {
+                if( beforeStart( node.element ) )
+                    node = descending ? node.left : node.right;
+                else
+                {
+                    stack[ top++ ] = node;
+                    node = descending ? node.right : node.left;
+                }
+            }
+        }
+
+        private boolean beforeStart( AnyType element )
+        {
+            return descending ? aboveHi( element ) : belowLo( element );
+        }
+
+        private boolean beyondEnd( AnyType element )
+        {
+            return descending ? belowLo( element ) : aboveHi( element );
+        }
+
+        private boolean belowLo( AnyType element )
+        {
+            if( lo == null )
+                return false;
+            int compareResult = element.compareTo( lo );
+            return compareResult < 0 || ( compareResult == 0 && !loInclusive );
+        }
+
+        private boolean aboveHi( AnyType element )
+        {
+            if( hi == null )
+                return false;
+            int compareResult = element.compareTo( hi );
+            return compareResult > 0 || ( compareResult == 0 && !hiInclusive );
+        }
+    }
+
+    /**
+     * Spliterator over the items of an optional leading node followed by a
+     * subtree.  trySplit gives away the leading node and the left subtree,
+     * and keeps the subtree's root as the new leading node ahead of its
+     * right subtree.
+     */
+    private class TreeSpliterator implements Spliterator<AnyType>
+    {
+        private AvlNode<AnyType> first;  // leading node, its items not yet walked
+        private int firstIndex;          // how many of them were returned
+        private AvlNode<AnyType> subtree;
+        private TreeIterator walk;     // created when traversal starts
+        private long remaining;
+
+        TreeSpliterator( AvlNode<AnyType> first, AvlNode<AnyType> subtree )
+        {
+            this.first = first;
+            this.subtree = subtree;
+            this.remaining = ( first == null ? 0 : first.count( ) ) + size( subtree );
+        }
+
+        @Override
+        public boolean tryAdvance( Consumer<? super AnyType> action )
+        {
+            if( first != null )
+            {
+                AnyType item = first.item( firstIndex++ );
+                if( firstIndex == first.count( ) )
+                    first = null;
+                remaining--;
+                action.accept( item );
+                return true;
+            }
+            if( walk == null )
+                walk = new TreeIterator( subtree );
+            if( !walk.hasNext( ) )
+                return false;
+            remaining--;
+            action.accept( walk.next( ) );
+            return true;
+        }
+
+        @Override
+        public Spliterator<AnyType> trySplit( )
+        {
+            if( walk != null || subtree == null || firstIndex > 0 )
+                return null;
+            AvlNode<AnyType> node = subtree;
+            TreeSpliterator prefix = new TreeSpliterator( first, node.left );
+            if( prefix.remaining == 0 )
+                return null;
+            first = node;
+            subtree = node.right;
+            remaining -= prefix.remaining;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize( )
+        {
+            return remaining;
+        }
+
+        @Override
+        public int characteristics( )
+        {
+            return ORDERED | SORTED | SIZED | SUBSIZED | NONNULL;
+        }
+
+        @Override
+        public Comparator<? super AnyType> getComparator( )
+        {
+            return null;   // natural ordering
+        }
+    }
+
+    /**
+     * The two halves produced by splitting a subtree.
+     */
+    private static class Split<AnyType>
+    {
+        AvlNode<AnyType> less;
+        AvlNode<AnyType> greater;
+    }
+
     private static class AvlNode<AnyType>
     {
         // Constructors
@@ -369,21 +1307,101 @@ public class AVLTree<AnyType extends Comparable<? super AnyType>>
             this.left = left;
             this.right = right;
             height   = 0;
+            size     = 1;
+        }
+
+        /**
+         * Return the number of items in this node: 1, or more in a multiset.
+         */
+        int count( )
+        {
+            return 1 + moreCount;
+        }
+
+        /**
+         * Return item i of this node, the oldest being item 0.
+         */
+        @SuppressWarnings( "unchecked" )
+        AnyType item( int i )
+        {
+            if( i == 0 )
+                return element;
+            return (AnyType) more[ ( moreHead + i - 1 ) % more.length ];
+        }
+
+        /**
+         * Add an item equal to element behind the others.
+         */
+        void append( AnyType x )
+        {
+            if( more == null )
+                more = new Object[ 2 ];
+            else if( moreCount == more.length )
+            {
+                Object[] grown = new Object[ more.length * 2 ];
+                for( int i = 0; i < moreCount; i++ )
+                    grown[ i ] = more[ ( moreHead + i ) % more.length ];
+                more = grown;
+                moreHead = 0;
+            }
+            more[ ( moreHead + moreCount++ ) % more.length ] = x;
+        }
+
+        /**
+         * Add the items of other, oldest first, behind the others.
+         */
+        void appendAll( AvlNode<AnyType> other )
+        {
+            for( int i = 0; i < other.count( ); i++ )
+                append( other.item( i ) );
+        }
+
+        /**
+         * Drop the oldest item; the node must hold more than one.
+         */
+        @SuppressWarnings( "unchecked" )
+        void shift( )
+        {
+            element = (AnyType) more[ moreHead ];
+            more[ moreHead ] = null;
+            moreHead = ( moreHead + 1 ) % more.length;
+            moreCount--;
+        }
+
+        /**
+         * Take over the extra items of other, whose element this node has
+         * just copied.
+         */
+        void takeBucket( AvlNode<AnyType> other )
+        {
+            more = other.more;
+            moreHead = other.moreHead;
+            moreCount = other.moreCount;
         }
 
         AnyType           element;      // The data in the node
         AvlNode<AnyType>  left;         // Left child
         AvlNode<AnyType>  right;        // Right child
         int               height;       // Height
+        int               size;         // Number of items in this subtree
+        Object[]          more;         // Equal items after element, a ring; null if none yet
+        int               moreHead;     // Index of the oldest of them
+        int               moreCount;    // How many there are
     }
 
     /** The tree root. */
     private AvlNode<AnyType> root;
 
+    /** True if equal items share a node. */
+    private final boolean multiset;
+
+    /** Scratch stack of the nodes on the current search path. */
+    private AvlNode<AnyType>[] pathStack = newPath( 32 );
+
 
     // Test program
     public static void main( String [ ] args ) {
-        AVLTree<Integer> tree = new AVLTree<>();
+        IntAVLTree tree = new IntAVLTree( );
         AVLTree<Dwarf> tree2 = new AVLTree<>();
 
         String[] nameList = {"Snowflake", "Sneezy", "Doc", "Grumpy", "Bashful", "Dopey", "Happy", "Doc", "Grumpy", "Bashful", "Doc", "Grumpy", "Bashful"};
@@ -399,6 +1417,13 @@ public class AVLTree<AnyType extends Comparable<? super AnyType>>
             tree2.deleteMin();
             tree2.printTree( "\n\n The Tree after deleteMin" );
         }
+
+        AVLTree<Dwarf> bag = new AVLTree<>( true );
+        for (int i=0; i < nameList.length; i++)
+            bag.insert(new Dwarf(nameList[i]));
+        bag.printTree( "\n\n The multiset Tree" );
+        bag.deleteMin();
+        bag.printTree( "\n\n The multiset Tree after deleteMin" );
     }
 
 }
@@ -0,0 +1,31 @@
+/**
+ * Open list backed by an AVLTree ordered on Node priority.
+ */
+public class AvlOpenList implements OpenList {
+
+    private AVLTree<Node> tree = new AVLTree<>(true);
+
+    @Override
+    public void add(Node node) {
+        tree.insert(node);
+    }
+
+    @Override
+    public Node poll() {
+        if (tree.isEmpty())
+            return null;
+        Node min = tree.findMin();
+        tree.deleteMin();
+        return min;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return tree.isEmpty();
+    }
+
+    @Override
+    public int size() {
+        return tree.size();
+    }
+}
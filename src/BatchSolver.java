@@ -0,0 +1,84 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Solves many puzzles at once with A* on a work-stealing ForkJoinPool.
+ * Each puzzle is one task with its own open list and state table, so a
+ * batch takes about as long as its slowest puzzle rather than the sum of
+ * all of them, and idle workers steal whatever puzzles are left.
+ * Nothing is printed; every puzzle yields a SolveResult.
+ */
+public class BatchSolver {
+
+    private final ForkJoinPool pool;
+    private final long timeoutMillis;
+    private final int nodeBudget;
+
+    /**
+     * Construct a solver using every core, without limits.
+     */
+    public BatchSolver() {
+        this(ForkJoinPool.commonPool(), 0, 0);
+    }
+
+    /**
+     * @param pool          the pool the searches run on
+     * @param timeoutMillis per-puzzle time limit; 0 or less for none
+     * @param nodeBudget    per-puzzle limit on expanded Nodes; 0 or less for none
+     */
+    public BatchSolver(ForkJoinPool pool, long timeoutMillis, int nodeBudget) {
+        this.pool = pool;
+        this.timeoutMillis = timeoutMillis;
+        this.nodeBudget = nodeBudget;
+    }
+
+    /**
+     * Solves the given puzzles.
+     * @param puzzles the puzzles, for instance from Puzzle.readPuzzlesFromFile
+     * @return one result per puzzle, in the same order
+     */
+    public List<SolveResult> solveAll(Puzzle[] puzzles) {
+        return solveAll(puzzles, 0, puzzles.length);
+    }
+
+    /**
+     * Solves puzzles[ from .. to-1 ].
+     * @return one result per puzzle, in the same order
+     */
+    public List<SolveResult> solveAll(Puzzle[] puzzles, int from, int to) {
+        List<SolveTask> tasks = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            tasks.add(new SolveTask(puzzles[i]));
+        }
+        return pool.invoke(new RecursiveTask<List<SolveResult>>() {
+            @Override
+            protected List<SolveResult> compute() {
+                ForkJoinTask.invokeAll(tasks);
+                List<SolveResult> results = new ArrayList<>(tasks.size());
+                for (SolveTask task : tasks) {
+                    results.add(task.join());
+                }
+                return results;
+            }
+        });
+    }
+
+    private class SolveTask extends RecursiveTask<SolveResult> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Puzzle puzzle;
+
+        SolveTask(Puzzle puzzle) {
+            this.puzzle = puzzle;
+        }
+
+        @Override
+        protected SolveResult compute() {
+            return puzzle.aStarSearch(new NodeHeap(), timeoutMillis, nodeBudget);
+        }
+    }
+}
@@ -0,0 +1,169 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Breadth first search from both ends at once.  Moves are reversible, so
+ * the backward search is an ordinary breadth first search started from
+ * every goal state at the same time: the goal car at the exit and every
+ * other car anywhere in its lane where it does not overlap another.  Each
+ * round expands one whole layer of whichever frontier is smaller, and
+ * the search stops at the first layer that reaches a state the other side
+ * has visited, taking the shortest of the joins found in that layer.  The
+ * two parent chains are then stitched into one path of ordinary Nodes.
+ * <p>
+ * When cars are few and lanes long the goal states can be too many to
+ * seed, so past a limit the search falls back to Puzzle.breadthFirstSearch.
+ */
+public class BidirectionalSearch {
+
+    /** Default limit on the number of goal states seeded. */
+    public static final int DEFAULT_MAX_GOAL_SEEDS = 1 << 16;
+
+    /** Expansions between checks of the deadline. */
+    private static final int DEADLINE_CHECK_INTERVAL = 1024;
+
+    private final Puzzle puzzle;
+    private final int maxGoalSeeds;
+
+    /**
+     * Construct a search of puzzle with the default seed limit.
+     */
+    public BidirectionalSearch(Puzzle puzzle) {
+        this(puzzle, DEFAULT_MAX_GOAL_SEEDS);
+    }
+
+    /**
+     * @param puzzle       the puzzle to solve
+     * @param maxGoalSeeds fall back to forward search if there are more goal states than this
+     */
+    public BidirectionalSearch(Puzzle puzzle, int maxGoalSeeds) {
+        this.puzzle = puzzle;
+        this.maxGoalSeeds = maxGoalSeeds;
+    }
+
+    /**
+     * Runs the search.
+     * @param timeoutMillis give up after this long; 0 or less for no limit
+     * @param nodeBudget    give up after expanding this many Nodes; 0 or less for no limit
+     * @return the outcome, with a shortest solution if there is one
+     */
+    public SolveResult solve(long timeoutMillis, int nodeBudget) {
+        long start = System.nanoTime();
+        long timeoutNanos = timeoutMillis > 0 ? timeoutMillis * 1_000_000L : Long.MAX_VALUE;
+        int budget = nodeBudget > 0 ? nodeBudget : Integer.MAX_VALUE;
+        String name = puzzle.getName();
+
+        Node root = puzzle.newInitNode();
+        if (root.isGoal())
+            return new SolveResult(name, SolveResult.Status.SOLVED, root, 0, System.nanoTime() - start);
+        List<Node> backward = goalStates();
+        if (backward == null)
+            return puzzle.breadthFirstSearch(timeoutMillis, nodeBudget);
+
+        List<Node> forward = new ArrayList<>();
+        forward.add(root);
+        StateTable forwardSeen = new StateTable();
+        forwardSeen.add(root);
+        StateTable backwardSeen = new StateTable(backward.size());
+        for (Node goal : backward) {
+            backwardSeen.add(goal);
+        }
+
+        Node[] children = new Node[puzzle.getMaxSuccessors()];
+        int nodesExpanded = 0;
+        while (!forward.isEmpty() && !backward.isEmpty()) {
+            boolean forwardTurn = forward.size() <= backward.size();
+            List<Node> layer = forwardTurn ? forward : backward;
+            StateTable seen = forwardTurn ? forwardSeen : backwardSeen;
+            StateTable other = forwardTurn ? backwardSeen : forwardSeen;
+
+            List<Node> next = new ArrayList<>();
+            Node bestMine = null;
+            Node bestTheirs = null;
+            for (Node current : layer) {
+                if (nodesExpanded >= budget)
+                    return new SolveResult(name, SolveResult.Status.BUDGET_EXCEEDED, null, nodesExpanded, System.nanoTime() - start);
+                if (nodesExpanded % DEADLINE_CHECK_INTERVAL == 0 && System.nanoTime() - start > timeoutNanos)
+                    return new SolveResult(name, SolveResult.Status.TIMED_OUT, null, nodesExpanded, System.nanoTime() - start);
+                int childCount = current.expand(children);
+                nodesExpanded++;
+                for (int c = 0; c < childCount; c++) {
+                    Node child = children[c];
+                    if (!seen.add(child))
+                        continue;
+                    Node join = other.get(child);
+                    if (join != null && (bestMine == null
+                            || child.getDepth() + join.getDepth() < bestMine.getDepth() + bestTheirs.getDepth())) {
+                        bestMine = child;
+                        bestTheirs = join;
+                    }
+                    next.add(child);
+                }
+            }
+            if (bestMine != null) {
+                Node solution = forwardTurn ? stitch(bestMine, bestTheirs) : stitch(bestTheirs, bestMine);
+                return new SolveResult(name, SolveResult.Status.SOLVED, solution, nodesExpanded, System.nanoTime() - start);
+            }
+            if (forwardTurn)
+                forward = next;
+            else
+                backward = next;
+        }
+        return new SolveResult(name, SolveResult.Status.NO_SOLUTION, null, nodesExpanded, System.nanoTime() - start);
+    }
+
+    /**
+     * Extends the forward chain ending at front, one move at a time, by
+     * replaying the backward chain from back (the same state) to its goal.
+     * @return the goal Node of the whole path
+     */
+    private Node stitch(Node front, Node back) {
+        Node current = front;
+        for (Node b = back; b.getParent() != null; b = b.getParent()) {
+            Node towardGoal = b.getParent();
+            for (int v = 0; v < puzzle.getNumCars(); v++) {
+                int position = towardGoal.getCarPosition(v);
+                if (b.getCarPosition(v) != position) {
+                    current = current.slide(v, position);
+                    break;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Lists a root Node for every goal state.
+     * @return the goal states, or null if there are more than maxGoalSeeds
+     */
+    private List<Node> goalStates() {
+        Bitboard bitboard = puzzle.getBitboard();
+        int[] positions = new int[puzzle.getNumCars()];
+        positions[Node.GOAL_CAR] = puzzle.getGridSize() - 1;
+        List<Node> goals = new ArrayList<>();
+        long occupancy = bitboard.carCells(Node.GOAL_CAR, positions[Node.GOAL_CAR]);
+        return placeCars(1, occupancy, positions, bitboard, goals) ? goals : null;
+    }
+
+    /**
+     * Tries every free position of car v and the cars after it.
+     * @return false once the number of goal states passes the limit
+     */
+    private boolean placeCars(int v, long occupancy, int[] positions, Bitboard bitboard, List<Node> goals) {
+        if (v == positions.length) {
+            if (goals.size() == maxGoalSeeds)
+                return false;
+            goals.add(new Node(puzzle, positions));
+            return true;
+        }
+        for (int p = 0; p + puzzle.getCarSize(v) <= puzzle.getGridSize(); p++) {
+            long cells = bitboard.carCells(v, p);
+            if ((occupancy & cells) != 0)
+                continue;
+            positions[v] = p;
+            if (!placeCars(v + 1, occupancy | cells, positions, bitboard, goals))
+                return false;
+        }
+        return true;
+    }
+}
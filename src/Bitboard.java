@@ -0,0 +1,126 @@
+/**
+ * Occupancy of a puzzle grid as a single long with one bit per cell.
+ * Cell (x, y) is bit y * gridSize + x, so each row of the grid is a
+ * contiguous run of gridSize bits.  The cells covered by every car at
+ * every position are precomputed once per puzzle, which lets a Node
+ * derive its occupancy from its parent by toggling only the moved car.
+ */
+public class Bitboard {
+
+    /** Largest grid whose cells fit in one long. */
+    public static final int MAX_GRID_SIZE = 8;
+
+    private final int gridSize;
+    private final long[][] carCells;   // [car][position] -> cells covered
+    private final long[] laneCells;    // [car] -> row or column the car slides along
+    private final int[] laneBase;      // [car] -> bit index of position 0 in its lane
+    private final int[] laneStride;    // [car] -> bit distance between positions
+    private final int[] carSize;
+
+    /**
+     * Precomputes the cell masks of every car of puzzle.
+     * @param puzzle the puzzle whose grid is described
+     */
+    public Bitboard(Puzzle puzzle) {
+        gridSize = puzzle.getGridSize();
+        if (gridSize > MAX_GRID_SIZE) {
+            throw new IllegalArgumentException("Grid size must be at most " + MAX_GRID_SIZE);
+        }
+        int numCars = puzzle.getNumCars();
+        carCells = new long[numCars][gridSize];
+        laneCells = new long[numCars];
+        laneBase = new int[numCars];
+        laneStride = new int[numCars];
+        carSize = new int[numCars];
+        for (int v = 0; v < numCars; v++) {
+            boolean orient = puzzle.getCarOrient(v);
+            int fp = puzzle.getFixedPosition(v);
+            carSize[v] = puzzle.getCarSize(v);
+            laneBase[v] = orient ? fp : fp * gridSize;
+            laneStride[v] = orient ? gridSize : 1;
+            for (int p = 0; p < gridSize; p++) {
+                laneCells[v] |= orient ? cell(fp, p) : cell(p, fp);
+            }
+            for (int p = 0; p < gridSize; p++) {
+                long cells = 0;
+                // The goal car may hang off the edge of the grid once it exits
+                for (int d = 0; d < puzzle.getCarSize(v) && p + d < gridSize; d++) {
+                    cells |= orient ? cell(fp, p + d) : cell(p + d, fp);
+                }
+                carCells[v][p] = cells;
+            }
+        }
+    }
+
+    /**
+     * Returns the bit of cell (x, y).
+     */
+    public long cell(int x, int y) {
+        return 1L << (y * gridSize + x);
+    }
+
+    /**
+     * Returns the cells covered by car v at variable position pos.
+     */
+    public long carCells(int v, int pos) {
+        return carCells[v][pos];
+    }
+
+    /**
+     * Returns the lowest position car v can slide to from pos, which is
+     * pos itself if the car is blocked on that side.
+     */
+    public int slideMin(int v, int pos, long occupancy) {
+        long before = occupancy & laneCells[v] & (laneBit(v, pos) - 1);
+        if (before == 0) {
+            return 0;
+        }
+        return positionOf(v, 63 - Long.numberOfLeadingZeros(before)) + 1;
+    }
+
+    /**
+     * Returns the highest position car v can slide to from pos, which is
+     * pos itself if the car is blocked on that side.  The goal car may
+     * slide one position past the edge when its path to the exit is clear.
+     */
+    public int slideMax(int v, int pos, long occupancy) {
+        int end = pos + carSize[v];
+        long after = end >= gridSize ? 0 : occupancy & laneCells[v] & -laneBit(v, end);
+        if (after == 0) {
+            int last = gridSize - carSize[v];
+            return v == Node.GOAL_CAR ? Math.max(pos, last + 1) : last;
+        }
+        return positionOf(v, Long.numberOfTrailingZeros(after)) - carSize[v];
+    }
+
+    /**
+     * Returns the cells of row y from column x to the right edge.
+     */
+    public long rowFrom(int y, int x) {
+        if (x >= gridSize) {
+            return 0;
+        }
+        long row = ((1L << gridSize) - 1) << (y * gridSize);
+        return row & (-1L << (y * gridSize + x));
+    }
+
+    private long laneBit(int v, int pos) {
+        return 1L << (laneBase[v] + pos * laneStride[v]);
+    }
+
+    private int positionOf(int v, int bit) {
+        return (bit - laneBase[v]) / laneStride[v];
+    }
+
+    /**
+     * Computes the occupancy of a whole state from scratch.
+     * @param varPos variable position of every car
+     */
+    public long occupancy(int[] varPos) {
+        long occupancy = 0;
+        for (int v = 0; v < varPos.length; v++) {
+            occupancy |= carCells[v][varPos[v]];
+        }
+        return occupancy;
+    }
+}
@@ -0,0 +1,27 @@
+/**
+ * The number of occupied cells between the goal car and the exit.  Every
+ * car in the way has to move at least once, so this never overestimates.
+ */
+public class BlockingCarsHeuristic implements Heuristic {
+
+    private final StateCodec codec;
+    private final Bitboard bitboard;
+    private final int goalRow;
+    private final int goalCarSize;
+
+    /**
+     * @param puzzle the puzzle whose states are estimated
+     */
+    public BlockingCarsHeuristic(Puzzle puzzle) {
+        this.codec = puzzle.getCodec();
+        this.bitboard = puzzle.getBitboard();
+        this.goalRow = puzzle.getFixedPosition(Node.GOAL_CAR);
+        this.goalCarSize = puzzle.getCarSize(Node.GOAL_CAR);
+    }
+
+    @Override
+    public int estimate(long state, long stateHigh, long occupancy) {
+        int end = codec.position(state, stateHigh, Node.GOAL_CAR) + goalCarSize;
+        return Long.bitCount(occupancy & bitboard.rowFrom(goalRow, end));
+    }
+}
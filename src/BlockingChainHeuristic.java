@@ -0,0 +1,154 @@
+/**
+ * Counts the cars that must move before the goal car can exit, looking
+ * one step past the cars directly in its way.  Outside a goal state the
+ * estimate is 1 for the goal car, plus 1 for every occupied cell between
+ * it and the exit, plus 1 for every other car that a blocker needs out of
+ * its way.
+ * <p>
+ * A vertical blocker clears the goal row by moving up until its bottom is
+ * above the row, or down until its top is below it.  Every car now on a
+ * cell it passes over has to move first.  When the grid leaves a blocker
+ * only one of the two ways, each car on that side is needed; when both
+ * ways are open nothing is certain, since no car sits both above and
+ * below the blocker.  Each counted car makes at least one move of its
+ * own, so the estimate never exceeds the true number of moves.
+ * <p>
+ * Which vertical cars have a single way out, the cells each would pass
+ * over from each position, and the cars that can cover each cell are
+ * precomputed when the puzzle is built, so an estimate only decodes the
+ * positions of the cars it looks at.
+ */
+public class BlockingChainHeuristic implements Heuristic {
+
+    private final StateCodec codec;
+    private final Bitboard bitboard;
+    private final int gridSize;
+    private final int goalRow;
+    private final int goalCarSize;
+    private final int goalPosition;
+    private final int[][] trappedByColumn;  // [column] -> vertical cars there with one way out of the goal row
+    private final long[][] escape;          // [car][position] -> cells passed on the way out, null unless trapped
+    private final int[][] carsByCell;       // [cell] -> cars whose lane contains the cell
+
+    /**
+     * Precomputes the escape cells of every car of puzzle.
+     * @param puzzle the puzzle whose states are estimated
+     */
+    public BlockingChainHeuristic(Puzzle puzzle) {
+        this.codec = puzzle.getCodec();
+        this.bitboard = puzzle.getBitboard();
+        this.gridSize = puzzle.getGridSize();
+        this.goalRow = puzzle.getFixedPosition(Node.GOAL_CAR);
+        this.goalCarSize = puzzle.getCarSize(Node.GOAL_CAR);
+        this.goalPosition = gridSize - 1;
+        int numCars = puzzle.getNumCars();
+
+        escape = new long[numCars][];
+        int[] trappedCount = new int[gridSize];
+        for (int v = 0; v < numCars; v++) {
+            if (!puzzle.getCarOrient(v))
+                continue;
+            int x = puzzle.getFixedPosition(v);
+            int size = puzzle.getCarSize(v);
+            boolean up = size <= goalRow;
+            boolean down = goalRow + 1 + size <= gridSize;
+            if (up == down)
+                continue;
+            escape[v] = new long[gridSize];
+            trappedCount[x]++;
+            // Only positions covering the goal row are ever looked up
+            for (int p = Math.max(0, goalRow - size + 1); p <= goalRow && p + size <= gridSize; p++) {
+                int from = up ? goalRow - size : p + size;
+                int to = up ? p - 1 : goalRow + size;
+                for (int y = from; y <= to; y++) {
+                    escape[v][p] |= bitboard.cell(x, y);
+                }
+            }
+        }
+        trappedByColumn = new int[gridSize][];
+        for (int x = 0; x < gridSize; x++) {
+            trappedByColumn[x] = new int[trappedCount[x]];
+            trappedCount[x] = 0;
+        }
+        for (int v = 0; v < numCars; v++) {
+            if (escape[v] != null) {
+                int x = puzzle.getFixedPosition(v);
+                trappedByColumn[x][trappedCount[x]++] = v;
+            }
+        }
+
+        int[] laneCount = new int[gridSize * gridSize];
+        for (int v = 0; v < numCars; v++) {
+            for (int p = 0; p < gridSize; p++) {
+                laneCount[laneCell(puzzle, v, p)]++;
+            }
+        }
+        carsByCell = new int[gridSize * gridSize][];
+        for (int cell = 0; cell < carsByCell.length; cell++) {
+            carsByCell[cell] = new int[laneCount[cell]];
+            laneCount[cell] = 0;
+        }
+        for (int v = 0; v < numCars; v++) {
+            for (int p = 0; p < gridSize; p++) {
+                int cell = laneCell(puzzle, v, p);
+                carsByCell[cell][laneCount[cell]++] = v;
+            }
+        }
+    }
+
+    @Override
+    public int estimate(long state, long stateHigh, long occupancy) {
+        int position = codec.position(state, stateHigh, Node.GOAL_CAR);
+        if (position == goalPosition)
+            return 0;
+        long ahead = occupancy & bitboard.rowFrom(goalRow, position + goalCarSize);
+        int estimate = 1 + Long.bitCount(ahead);
+        long needed = 0;
+        while (ahead != 0) {
+            int x = Long.numberOfTrailingZeros(ahead) % gridSize;
+            ahead &= ahead - 1;
+            for (int v : trappedByColumn[x]) {
+                // No cells are listed for positions off the goal row
+                long cells = escape[v][codec.position(state, stateHigh, v)] & occupancy;
+                if (cells != 0)
+                    needed |= carsOn(cells, state, stateHigh);
+            }
+        }
+        // Escape cells lie outside the goal row, so no blocker is counted twice
+        return estimate + Long.bitCount(needed);
+    }
+
+    /**
+     * Returns one bit per car covering any of the given occupied cells.
+     */
+    private long carsOn(long cells, long state, long stateHigh) {
+        long cars = 0;
+        while (cells != 0) {
+            cars |= 1L << carAt(Long.numberOfTrailingZeros(cells), state, stateHigh);
+            cells &= cells - 1;
+        }
+        return cars;
+    }
+
+    /**
+     * Returns the car covering an occupied cell.
+     * @param cell bit index of the cell, see Bitboard
+     */
+    private int carAt(int cell, long state, long stateHigh) {
+        long bit = 1L << cell;
+        for (int v : carsByCell[cell]) {
+            if ((bitboard.carCells(v, codec.position(state, stateHigh, v)) & bit) != 0)
+                return v;
+        }
+        throw new IllegalStateException("No car covers cell " + cell);
+    }
+
+    /**
+     * Returns the bit index of the cell at position p of the lane of car v.
+     */
+    private static int laneCell(Puzzle puzzle, int v, int p) {
+        int gridSize = puzzle.getGridSize();
+        int fixed = puzzle.getFixedPosition(v);
+        return puzzle.getCarOrient(v) ? p * gridSize + fixed : fixed * gridSize + p;
+    }
+}
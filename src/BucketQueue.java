@@ -0,0 +1,149 @@
+import java.util.Arrays;
+
+/**
+ * Open list for integer priorities.  Node priority (depth + stepsTo) is a
+ * small non-negative int, so Nodes are kept in buckets indexed first by
+ * priority and then by depth, and a cursor tracks the smallest non-empty
+ * priority.  Adding and removing are constant time apart from moving the
+ * cursors past empty buckets.  Among Nodes of equal priority the deepest
+ * (or, if configured, the shallowest) is removed first, and Nodes of equal
+ * priority and depth come out last in, first out, or first in, first out
+ * if configured.
+ */
+public class BucketQueue implements OpenList {
+
+    private final boolean preferDeeper;
+    private final boolean fifo;
+    private Bucket[][] buckets = new Bucket[16][];         // [priority][depth]
+    private int[] counts = new int[16];                    // [priority] -> Nodes held
+    private int[] depthCursor = new int[16];               // [priority] -> depth to try first
+    private int minPriority;
+    private int size;
+
+    /**
+     * Construct a queue that prefers deeper Nodes on ties, which tends to
+     * reach a goal sooner, and the newest of equal Nodes.
+     */
+    public BucketQueue() {
+        this(true);
+    }
+
+    /**
+     * Construct a queue that takes the newest of equal Nodes first.
+     * @param preferDeeper true to break priority ties towards the deepest
+     *                     Node, false towards the shallowest
+     */
+    public BucketQueue(boolean preferDeeper) {
+        this(preferDeeper, false);
+    }
+
+    /**
+     * @param preferDeeper true to break priority ties towards the deepest
+     *                     Node, false towards the shallowest
+     * @param fifo         true to take Nodes of equal priority and depth in
+     *                     the order they were added, false for newest first
+     */
+    public BucketQueue(boolean preferDeeper, boolean fifo) {
+        this.preferDeeper = preferDeeper;
+        this.fifo = fifo;
+    }
+
+    @Override
+    public void add(Node node) {
+        int f = node.getPriority();
+        int g = node.getDepth();
+        if (f >= buckets.length)
+            grow(f + 1);
+        Bucket[] row = buckets[f];
+        if (row == null || g >= row.length)
+            row = buckets[f] = Arrays.copyOf(row == null ? new Bucket[0] : row, Math.max(g + 1, f + 1));
+        if (row[g] == null)
+            row[g] = new Bucket();
+        row[g].add(node);
+
+        if (counts[f]++ == 0 || (preferDeeper ? g > depthCursor[f] : g < depthCursor[f]))
+            depthCursor[f] = g;
+        if (size++ == 0 || f < minPriority)
+            minPriority = f;
+    }
+
+    @Override
+    public Node poll() {
+        if (size == 0)
+            return null;
+        while (counts[minPriority] == 0)
+            minPriority++;
+        int f = minPriority;
+        Bucket[] row = buckets[f];
+        int g = depthCursor[f];
+        int step = preferDeeper ? -1 : 1;
+        while (row[g] == null || row[g].isEmpty())
+            g += step;
+        depthCursor[f] = g;
+        counts[f]--;
+        size--;
+        return fifo ? row[g].takeOldest() : row[g].takeNewest();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    private void grow(int minLength) {
+        int length = Math.max(minLength, buckets.length * 2);
+        buckets = Arrays.copyOf(buckets, length);
+        counts = Arrays.copyOf(counts, length);
+        depthCursor = Arrays.copyOf(depthCursor, length);
+    }
+
+    /**
+     * Growable array of Nodes, taken from the back as a stack or from the
+     * head index as a queue.
+     */
+    private static class Bucket {
+        Node[] items = new Node[8];
+        int head;
+        int size;
+
+        void add(Node node) {
+            if (size == items.length) {
+                // Reuse the front slots once at least half have been taken
+                if (head >= size / 2) {
+                    System.arraycopy(items, head, items, 0, size - head);
+                    Arrays.fill(items, size - head, size, null);
+                    size -= head;
+                    head = 0;
+                } else {
+                    items = Arrays.copyOf(items, size * 2);
+                }
+            }
+            items[size++] = node;
+        }
+
+        Node takeNewest() {
+            Node node = items[--size];
+            items[size] = null;
+            if (size == head)
+                head = size = 0;
+            return node;
+        }
+
+        Node takeOldest() {
+            Node node = items[head];
+            items[head++] = null;
+            if (size == head)
+                head = size = 0;
+            return node;
+        }
+
+        boolean isEmpty() {
+            return size == head;
+        }
+    }
+}
@@ -0,0 +1,851 @@
+// ConcurrentAVLTree class
+//
+// CONSTRUCTION: with no initializer
+//
+// ******************PUBLIC OPERATIONS*********************
+// boolean insert( x )    --> Insert x; return false if already present
+// boolean remove( x )    --> Remove x; return false if not present
+// boolean contains( x )  --> Return true if x is present
+// int size( )            --> Return number of items
+// boolean isEmpty( )     --> Return true if empty; else false
+// ******************ERRORS********************************
+// Null items are rejected with NullPointerException
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A sorted set that many threads can read and update at once, using the
+ * relaxed balance AVL tree of Bronson, Casper, Chafi and Olukotun, "A
+ * Practical Concurrent Binary Search Tree" (PPoPP 2010).
+ * <p>
+ * Searches take no locks.  Every node carries a version number that a
+ * rotation marks as "shrinking" while it moves nodes out of the node's
+ * subtree and bumps when it is done; a search remembers the version of
+ * each node it passes and retries from the parent if the version changed,
+ * so it never misses a key that was moved aside under it.  Updates lock
+ * only the nodes they link or unlink, and rebalancing walks back up the
+ * tree locking a parent and child at a time.  Removing a node with two
+ * children just clears its presence flag, leaving a routing node that is
+ * unlinked later once it has at most one child.
+ * <p>
+ * Unlike AVLTree, duplicates are not stored: this is a set.
+ * Note that all "matching" is based on the compareTo method.
+ */
+public class ConcurrentAVLTree<AnyType extends Comparable<? super AnyType>>
+{
+    // Version bits: a node is either unlinked (exactly UNLINKED), or its
+    // version is a change count times CHANGE_INCREMENT, with SHRINKING set
+    // while a rotation is moving keys out of its subtree.
+    private static final long UNLINKED = 1L;
+    private static final long SHRINKING = 2L;
+    private static final long CHANGE_INCREMENT = 4L;
+
+    private static final int SPIN_COUNT = 100;
+
+    // Results of nodeCondition that are not a new height
+    private static final int UNLINK_REQUIRED = -1;
+    private static final int REBALANCE_REQUIRED = -2;
+    private static final int NOTHING_REQUIRED = -3;
+
+    /** Marker returned when an attempt must be restarted from the parent. */
+    private static final Object RETRY = new Object( );
+
+    /** Sentinel whose right child is the real root. */
+    private final AvlNode<AnyType> rootHolder = new AvlNode<>( null, 0, false, null );
+
+    private final LongAdder size = new LongAdder( );
+
+    /**
+     * Construct the tree.
+     */
+    public ConcurrentAVLTree( )
+    {
+    }
+
+    /**
+     * Find an item in the tree without taking any lock.
+     * @param element the item to search for.
+     * @return true if x is found.
+     */
+    public boolean contains( AnyType element )
+    {
+        checkElement( element );
+        return (Boolean) attemptGet( element, rootHolder, 1, 0L );
+    }
+
+    /**
+     * Insert into the tree.
+     * @param element the item to insert.
+     * @return true if the item was added, false if it was already present.
+     */
+    public boolean insert( AnyType element )
+    {
+        checkElement( element );
+        boolean added = (Boolean) attemptInsert( element, rootHolder, 1, 0L );
+        if( added )
+            size.increment( );
+        return added;
+    }
+
+    /**
+     * Remove from the tree.
+     * @param element the item to remove.
+     * @return true if the item was present.
+     */
+    public boolean remove( AnyType element )
+    {
+        checkElement( element );
+        boolean removed = (Boolean) attemptRemove( element, rootHolder, 1, 0L );
+        if( removed )
+            size.decrement( );
+        return removed;
+    }
+
+    /**
+     * Return the number of items.  The count is exact when no update is
+     * in progress.
+     */
+    public int size( )
+    {
+        return (int) Math.min( Integer.MAX_VALUE, Math.max( 0, size.sum( ) ) );
+    }
+
+    /**
+     * Test if the tree is logically empty.
+     * @return true if empty, false otherwise.
+     */
+    public boolean isEmpty( )
+    {
+        return size( ) == 0;
+    }
+
+    private static void checkElement( Object element )
+    {
+        if( element == null )
+            throw new NullPointerException( "ConcurrentAVLTree does not hold null items" );
+    }
+
+    /**
+     * Search the subtree on side dir of node, whose version was nodeVersion
+     * when the search arrived at it.
+     * @return Boolean.TRUE or Boolean.FALSE, or RETRY if node has changed.
+     */
+    private Object attemptGet( AnyType element, AvlNode<AnyType> node, int dir, long nodeVersion )
+    {
+        while( true )
+        {
+            AvlNode<AnyType> child = node.child( dir );
+            if( node.version != nodeVersion )
+                return RETRY;
+            if( child == null )
+                return Boolean.FALSE;
+
+            int nextDir = element.compareTo( child.element );
+            if( nextDir == 0 )
+                return child.present;
+
+            long childVersion = child.version;
+            if( ( childVersion & SHRINKING ) != 0 )
+                waitUntilNotChanging( child );
+            else if( childVersion != UNLINKED && child == node.child( dir ) )
+            {
+                // The child was reached through a consistent link
+                if( node.version != nodeVersion )
+                    return RETRY;
+                Object result = attemptGet( element, child, nextDir, childVersion );
+                if( result != RETRY )
+                    return result;
+            }
+        }
+    }
+
+    /**
+     * Insert into the subtree on side dir of node.
+     * @return Boolean.TRUE if added, Boolean.FALSE if present, or RETRY.
+     */
+    private Object attemptInsert( AnyType element, AvlNode<AnyType> node, int dir, long nodeVersion )
+    {
+        Object result;
+        do
+        {
+            result = RETRY;
+            AvlNode<AnyType> child = node.child( dir );
+            if( node.version != nodeVersion )
+                return RETRY;
+
+            if( child == null )
+                result = attemptLink( element, node, dir, nodeVersion );
+            else
+            {
+                int nextDir = element.compareTo( child.element );
+                if( nextDir == 0 )
+                    result = attemptMarkPresent( child );
+                else
+                {
+                    long childVersion = child.version;
+                    if( ( childVersion & SHRINKING ) != 0 )
+                        waitUntilNotChanging( child );
+                    else if( childVersion != UNLINKED && child == node.child( dir ) )
+                    {
+                        if( node.version != nodeVersion )
+                            return RETRY;
+                        result = attemptInsert( element, child, nextDir, childVersion );
+                    }
+                }
+            }
+        } while( result == RETRY );
+        return result;
+    }
+
+    /**
+     * Hang a new leaf on the empty side dir of node.
+     */
+    private Object attemptLink( AnyType element, AvlNode<AnyType> node, int dir, long nodeVersion )
+    {
+        synchronized( node )
+        {
+            if( node.version != nodeVersion || node.child( dir ) != null )
+                return RETRY;
+            node.setChild( dir, new AvlNode<>( element, 1, true, node ) );
+        }
+        fixHeightAndRebalance( node );
+        return Boolean.TRUE;
+    }
+
+    /**
+     * Make the item of an existing (possibly routing) node present.
+     */
+    private Object attemptMarkPresent( AvlNode<AnyType> node )
+    {
+        synchronized( node )
+        {
+            if( node.version == UNLINKED )
+                return RETRY;
+            if( node.present )
+                return Boolean.FALSE;
+            node.present = true;
+            return Boolean.TRUE;
+        }
+    }
+
+    /**
+     * Remove from the subtree on side dir of node.
+     * @return Boolean.TRUE if removed, Boolean.FALSE if absent, or RETRY.
+     */
+    private Object attemptRemove( AnyType element, AvlNode<AnyType> node, int dir, long nodeVersion )
+    {
+        Object result;
+        do
+        {
+            result = RETRY;
+            AvlNode<AnyType> child = node.child( dir );
+            if( node.version != nodeVersion )
+                return RETRY;
+
+            if( child == null )
+                return Boolean.FALSE;
+
+            int nextDir = element.compareTo( child.element );
+            if( nextDir == 0 )
+                result = attemptRemoveNode( node, child );
+            else
+            {
+                long childVersion = child.version;
+                if( ( childVersion & SHRINKING ) != 0 )
+                    waitUntilNotChanging( child );
+                else if( childVersion != UNLINKED && child == node.child( dir ) )
+                {
+                    if( node.version != nodeVersion )
+                        return RETRY;
+                    result = attemptRemove( element, child, nextDir, childVersion );
+                }
+            }
+        } while( result == RETRY );
+        return result;
+    }
+
+    /**
+     * Remove the item of node, a child of parent: unlink node if it has at
+     * most one child, otherwise leave it in place as a routing node.
+     */
+    private Object attemptRemoveNode( AvlNode<AnyType> parent, AvlNode<AnyType> node )
+    {
+        if( !node.present )
+            return Boolean.FALSE;
+
+        boolean wasPresent;
+        if( !canUnlink( node ) )
+        {
+            synchronized( node )
+            {
+                if( node.version == UNLINKED || canUnlink( node ) )
+                    return RETRY;
+                wasPresent = node.present;
+                node.present = false;
+            }
+        }
+        else
+        {
+            synchronized( parent )
+            {
+                if( parent.version == UNLINKED || node.parent != parent || node.version == UNLINKED )
+                    return RETRY;
+                synchronized( node )
+                {
+                    wasPresent = node.present;
+                    if( !canUnlink( node ) )
+                        return RETRY;
+                    AvlNode<AnyType> splice = ( node.left == null ) ? node.right : node.left;
+                    if( parent.left == node )
+                        parent.left = splice;
+                    else
+                        parent.right = splice;
+                    if( splice != null )
+                        splice.parent = parent;
+                    node.version = UNLINKED;
+                    node.present = false;
+                }
+            }
+            fixHeightAndRebalance( parent );
+        }
+        return wasPresent;
+    }
+
+    private static boolean canUnlink( AvlNode<?> node )
+    {
+        return node.left == null || node.right == null;
+    }
+
+    /**
+     * Spin briefly while a rotation shrinks node, then wait on its lock.
+     */
+    private static void waitUntilNotChanging( AvlNode<?> node )
+    {
+        long version = node.version;
+        if( ( version & SHRINKING ) != 0 )
+        {
+            int i = 0;
+            while( node.version == version && i < SPIN_COUNT )
+                ++i;
+            if( i == SPIN_COUNT )
+            {
+                synchronized( node )
+                {
+                    // The rotation holds this lock, so acquiring it waits for it
+                }
+            }
+        }
+    }
+
+    private static long beginChange( long version )
+    {
+        return version | SHRINKING;
+    }
+
+    private static long endChange( long version )
+    {
+        return ( version | SHRINKING | UNLINKED ) + 1;   // clears both bits and counts the change
+    }
+
+    /**
+     * Return the height of node, or 0 if null.  Leaves have height 1.
+     */
+    private static int height( AvlNode<?> node )
+    {
+        return node == null ? 0 : node.height;
+    }
+
+    /**
+     * Work out what repair node needs, without locks.
+     * @return UNLINK_REQUIRED, REBALANCE_REQUIRED, NOTHING_REQUIRED, or the
+     * new height node should have.
+     */
+    private static int nodeCondition( AvlNode<?> node )
+    {
+        AvlNode<?> nL = node.left;
+        AvlNode<?> nR = node.right;
+
+        if( ( nL == null || nR == null ) && !node.present )
+            return UNLINK_REQUIRED;
+
+        int hN = node.height;
+        int hL0 = height( nL );
+        int hR0 = height( nR );
+        int hNRepl = 1 + Math.max( hL0, hR0 );
+        int bal = hL0 - hR0;
+
+        if( bal < -1 || bal > 1 )
+            return REBALANCE_REQUIRED;
+        return hN != hNRepl ? hNRepl : NOTHING_REQUIRED;
+    }
+
+    /**
+     * Repair heights, balance and routing nodes from node up towards the
+     * root, stopping once nothing more needs fixing.  A rotation that
+     * hands back damage below itself leaves the parent it rotated under
+     * pending; once that damage is repaired the walk resumes there and
+     * checks every ancestor, since the subtree may have changed height.
+     */
+    private void fixHeightAndRebalance( AvlNode<AnyType> node )
+    {
+        AvlNode<AnyType> pending = null;
+        boolean sweep = false;
+        while( true )
+        {
+            int condition = NOTHING_REQUIRED;
+            if( node != null && node.parent != null )
+            {
+                condition = nodeCondition( node );
+                if( node.version == UNLINKED )
+                    return;
+            }
+            if( condition == NOTHING_REQUIRED )
+            {
+                if( sweep && node != null && node.parent != null )
+                    node = node.parent;
+                else if( pending != null )
+                {
+                    node = pending;
+                    pending = null;
+                    sweep = true;
+                }
+                else
+                    return;
+                continue;
+            }
+
+            if( condition != UNLINK_REQUIRED && condition != REBALANCE_REQUIRED )
+            {
+                synchronized( node )
+                {
+                    node = fixHeight_nl( node );
+                }
+            }
+            else
+            {
+                AvlNode<AnyType> parent = node.parent;
+                synchronized( parent )
+                {
+                    if( parent.version != UNLINKED && node.parent == parent )
+                    {
+                        synchronized( node )
+                        {
+                            node = rebalance_nl( parent, node );
+                        }
+                        if( node != null && node != parent && node != parent.parent )
+                            pending = parent;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Fix the height of node, which the caller has locked.
+     * @return the next node to repair, or null if none.
+     */
+    private AvlNode<AnyType> fixHeight_nl( AvlNode<AnyType> node )
+    {
+        int condition = nodeCondition( node );
+        switch( condition )
+        {
+            case REBALANCE_REQUIRED:
+            case UNLINK_REQUIRED:
+                return node;
+            case NOTHING_REQUIRED:
+                return null;
+            default:
+                node.height = condition;
+                return node.parent;
+        }
+    }
+
+    /**
+     * Unlink, rotate or fix the height of node; the caller has locked both
+     * parent and node.
+     * @return the next node to repair, or null if none.
+     */
+    private AvlNode<AnyType> rebalance_nl( AvlNode<AnyType> parent, AvlNode<AnyType> node )
+    {
+        AvlNode<AnyType> nL = node.left;
+        AvlNode<AnyType> nR = node.right;
+
+        if( ( nL == null || nR == null ) && !node.present )
+        {
+            if( attemptUnlink_nl( parent, node ) )
+                return fixHeight_nl( parent );
+            return node;   // retry
+        }
+
+        int hN = node.height;
+        int hL0 = height( nL );
+        int hR0 = height( nR );
+        int hNRepl = 1 + Math.max( hL0, hR0 );
+        int bal = hL0 - hR0;
+
+        if( bal > 1 )
+            return rebalanceToRight_nl( parent, node, nL, hR0 );
+        if( bal < -1 )
+            return rebalanceToLeft_nl( parent, node, nR, hL0 );
+        if( hNRepl != hN )
+        {
+            node.height = hNRepl;
+            return fixHeight_nl( parent );
+        }
+        return null;
+    }
+
+    /**
+     * Unlink a routing node with at most one child; parent and node are locked.
+     * @return true if node was unlinked.
+     */
+    private boolean attemptUnlink_nl( AvlNode<AnyType> parent, AvlNode<AnyType> node )
+    {
+        AvlNode<AnyType> parentL = parent.left;
+        AvlNode<AnyType> parentR = parent.right;
+        if( parentL != node && parentR != node )
+            return false;   // node is no longer a child of parent
+
+        AvlNode<AnyType> nL = node.left;
+        AvlNode<AnyType> nR = node.right;
+        if( nL != null && nR != null )
+            return false;   // splicing is no longer possible
+
+        AvlNode<AnyType> splice = nL != null ? nL : nR;
+        if( parentL == node )
+            parent.left = splice;
+        else
+            parent.right = splice;
+        if( splice != null )
+            splice.parent = parent;
+
+        node.version = UNLINKED;
+        node.present = false;
+        return true;
+    }
+
+    /**
+     * node is too heavy on the left: rotate right, once or twice.
+     */
+    private AvlNode<AnyType> rebalanceToRight_nl( AvlNode<AnyType> parent, AvlNode<AnyType> node,
+                                                  AvlNode<AnyType> nL, int hR0 )
+    {
+        synchronized( nL )
+        {
+            int hL = nL.height;
+            if( hL - hR0 <= 1 )
+                return node;   // retry
+
+            AvlNode<AnyType> nLR = nL.right;
+            int hLL0 = height( nL.left );
+            int hLR0 = height( nLR );
+            if( hLL0 >= hLR0 )
+                return rotateRight_nl( parent, node, nL, hR0, hLL0, nLR, hLR0 );
+
+            synchronized( nLR )
+            {
+                // nLR is now stable, so its height can be trusted
+                int hLR = nLR.height;
+                if( hLL0 >= hLR )
+                    return rotateRight_nl( parent, node, nL, hR0, hLL0, nLR, hLR );
+
+                int hLRL = height( nLR.left );
+                int b = hLL0 - hLRL;
+                if( b >= -1 && b <= 1 )
+                    return rotateRightOverLeft_nl( parent, node, nL, hR0, hLL0, nLR, hLRL );
+            }
+            // The double rotation would leave nL unbalanced; rotate at nL first
+            return rebalanceToLeft_nl( node, nL, nLR, hLL0 );
+        }
+    }
+
+    /**
+     * node is too heavy on the right: rotate left, once or twice.
+     */
+    private AvlNode<AnyType> rebalanceToLeft_nl( AvlNode<AnyType> parent, AvlNode<AnyType> node,
+                                                 AvlNode<AnyType> nR, int hL0 )
+    {
+        synchronized( nR )
+        {
+            int hR = nR.height;
+            if( hL0 - hR >= -1 )
+                return node;   // retry
+
+            AvlNode<AnyType> nRL = nR.left;
+            int hRL0 = height( nRL );
+            int hRR0 = height( nR.right );
+            if( hRR0 >= hRL0 )
+                return rotateLeft_nl( parent, node, hL0, nR, nRL, hRL0, hRR0 );
+
+            synchronized( nRL )
+            {
+                int hRL = nRL.height;
+                if( hRR0 >= hRL )
+                    return rotateLeft_nl( parent, node, hL0, nR, nRL, hRL, hRR0 );
+
+                int hRLR = height( nRL.right );
+                int b = hRR0 - hRLR;
+                if( b >= -1 && b <= 1 )
+                    return rotateLeftOverRight_nl( parent, node, hL0, nR, nRL, hRR0, hRLR );
+            }
+            return rebalanceToRight_nl( node, nR, nRL, hRR0 );
+        }
+    }
+
+    /**
+     * Single rotation for case 1, with parent, node and nL locked.
+     * @return the next node to repair, or null if none.
+     */
+    private AvlNode<AnyType> rotateRight_nl( AvlNode<AnyType> parent, AvlNode<AnyType> node, AvlNode<AnyType> nL,
+                                             int hR, int hLL, AvlNode<AnyType> nLR, int hLR )
+    {
+        long nodeVersion = node.version;
+        AvlNode<AnyType> parentL = parent.left;
+
+        node.version = beginChange( nodeVersion );
+
+        node.left = nLR;
+        if( nLR != null )
+            nLR.parent = node;
+
+        nL.right = node;
+        node.parent = nL;
+
+        if( parentL == node )
+            parent.left = nL;
+        else
+            parent.right = nL;
+        nL.parent = parent;
+
+        int hNRepl = 1 + Math.max( hLR, hR );
+        node.height = hNRepl;
+        nL.height = 1 + Math.max( hLL, hNRepl );
+
+        node.version = endChange( nodeVersion );
+
+        // Fix what can be fixed with the locks already held
+        int balN = hLR - hR;
+        if( balN < -1 || balN > 1 )
+            return node;
+        if( ( nLR == null || hR == 0 ) && !node.present )
+            return node;
+
+        int balL = hLL - hNRepl;
+        if( balL < -1 || balL > 1 )
+            return nL;
+        if( hLL == 0 && !nL.present )
+            return nL;
+
+        return fixHeight_nl( parent );
+    }
+
+    /**
+     * Single rotation for case 4, with parent, node and nR locked.
+     * @return the next node to repair, or null if none.
+     */
+    private AvlNode<AnyType> rotateLeft_nl( AvlNode<AnyType> parent, AvlNode<AnyType> node, int hL,
+                                            AvlNode<AnyType> nR, AvlNode<AnyType> nRL, int hRL, int hRR )
+    {
+        long nodeVersion = node.version;
+        AvlNode<AnyType> parentL = parent.left;
+
+        node.version = beginChange( nodeVersion );
+
+        node.right = nRL;
+        if( nRL != null )
+            nRL.parent = node;
+
+        nR.left = node;
+        node.parent = nR;
+
+        if( parentL == node )
+            parent.left = nR;
+        else
+            parent.right = nR;
+        nR.parent = parent;
+
+        int hNRepl = 1 + Math.max( hL, hRL );
+        node.height = hNRepl;
+        nR.height = 1 + Math.max( hNRepl, hRR );
+
+        node.version = endChange( nodeVersion );
+
+        int balN = hRL - hL;
+        if( balN < -1 || balN > 1 )
+            return node;
+        if( ( nRL == null || hL == 0 ) && !node.present )
+            return node;
+
+        int balR = hRR - hNRepl;
+        if( balR < -1 || balR > 1 )
+            return nR;
+        if( hRR == 0 && !nR.present )
+            return nR;
+
+        return fixHeight_nl( parent );
+    }
+
+    /**
+     * Double rotation for case 2, with parent, node, nL and nLR locked.
+     * @return the next node to repair, or null if none.
+     */
+    private AvlNode<AnyType> rotateRightOverLeft_nl( AvlNode<AnyType> parent, AvlNode<AnyType> node, AvlNode<AnyType> nL,
+                                                     int hR, int hLL, AvlNode<AnyType> nLR, int hLRL )
+    {
+        long nodeVersion = node.version;
+        long leftVersion = nL.version;
+
+        AvlNode<AnyType> parentL = parent.left;
+        AvlNode<AnyType> nLRL = nLR.left;
+        AvlNode<AnyType> nLRR = nLR.right;
+        int hLRR = height( nLRR );
+
+        node.version = beginChange( nodeVersion );
+        nL.version = beginChange( leftVersion );
+
+        node.left = nLRR;
+        if( nLRR != null )
+            nLRR.parent = node;
+
+        nL.right = nLRL;
+        if( nLRL != null )
+            nLRL.parent = nL;
+
+        nLR.left = nL;
+        nL.parent = nLR;
+        nLR.right = node;
+        node.parent = nLR;
+
+        if( parentL == node )
+            parent.left = nLR;
+        else
+            parent.right = nLR;
+        nLR.parent = parent;
+
+        int hNRepl = 1 + Math.max( hLRR, hR );
+        node.height = hNRepl;
+        int hLRepl = 1 + Math.max( hLL, hLRL );
+        nL.height = hLRepl;
+        nLR.height = 1 + Math.max( hLRepl, hNRepl );
+
+        node.version = endChange( nodeVersion );
+        nL.version = endChange( leftVersion );
+
+        // A routing nL may have been left with one child; nLR and nL are
+        // both locked, so splice it out now rather than leave that damage
+        if( !nL.present && ( nL.left == null || nLRL == null ) && attemptUnlink_nl( nLR, nL ) )
+        {
+            hLRepl = height( nLR.left );
+            nLR.height = 1 + Math.max( hLRepl, hNRepl );
+        }
+
+        int balN = hLRR - hR;
+        if( balN < -1 || balN > 1 )
+            return node;
+        if( ( nLRR == null || hR == 0 ) && !node.present )
+            return node;
+
+        int balLR = hLRepl - hNRepl;
+        if( balLR < -1 || balLR > 1 )
+            return nLR;
+
+        return fixHeight_nl( parent );
+    }
+
+    /**
+     * Double rotation for case 3, with parent, node, nR and nRL locked.
+     * @return the next node to repair, or null if none.
+     */
+    private AvlNode<AnyType> rotateLeftOverRight_nl( AvlNode<AnyType> parent, AvlNode<AnyType> node, int hL,
+                                                     AvlNode<AnyType> nR, AvlNode<AnyType> nRL, int hRR, int hRLR )
+    {
+        long nodeVersion = node.version;
+        long rightVersion = nR.version;
+
+        AvlNode<AnyType> parentL = parent.left;
+        AvlNode<AnyType> nRLL = nRL.left;
+        AvlNode<AnyType> nRLR = nRL.right;
+        int hRLL = height( nRLL );
+
+        node.version = beginChange( nodeVersion );
+        nR.version = beginChange( rightVersion );
+
+        node.right = nRLL;
+        if( nRLL != null )
+            nRLL.parent = node;
+
+        nR.left = nRLR;
+        if( nRLR != null )
+            nRLR.parent = nR;
+
+        nRL.right = nR;
+        nR.parent = nRL;
+        nRL.left = node;
+        node.parent = nRL;
+
+        if( parentL == node )
+            parent.left = nRL;
+        else
+            parent.right = nRL;
+        nRL.parent = parent;
+
+        int hNRepl = 1 + Math.max( hL, hRLL );
+        node.height = hNRepl;
+        int hRRepl = 1 + Math.max( hRLR, hRR );
+        nR.height = hRRepl;
+        nRL.height = 1 + Math.max( hNRepl, hRRepl );
+
+        node.version = endChange( nodeVersion );
+        nR.version = endChange( rightVersion );
+
+        if( !nR.present && ( nRLR == null || nR.right == null ) && attemptUnlink_nl( nRL, nR ) )
+        {
+            hRRepl = height( nRL.right );
+            nRL.height = 1 + Math.max( hNRepl, hRRepl );
+        }
+
+        int balN = hRLL - hL;
+        if( balN < -1 || balN > 1 )
+            return node;
+        if( ( nRLL == null || hL == 0 ) && !node.present )
+            return node;
+
+        int balRL = hRRepl - hNRepl;
+        if( balRL < -1 || balRL > 1 )
+            return nRL;
+
+        return fixHeight_nl( parent );
+    }
+
+    private static class AvlNode<AnyType>
+    {
+        AvlNode( AnyType theElement, int height, boolean present, AvlNode<AnyType> parent )
+        {
+            element = theElement;
+            this.height = height;
+            this.present = present;
+            this.parent = parent;
+        }
+
+        AvlNode<AnyType> child( int dir )
+        {
+            return dir < 0 ? left : right;
+        }
+
+        void setChild( int dir, AvlNode<AnyType> node )
+        {
+            if( dir < 0 )
+                left = node;
+            else
+                right = node;
+        }
+
+        final AnyType              element;     // The data in the node
+        volatile boolean           present;     // False for a routing node
+        volatile long              version;     // See UNLINKED, SHRINKING
+        volatile int               height;      // Height, 1 for a leaf
+        volatile AvlNode<AnyType>  parent;
+        volatile AvlNode<AnyType>  left;        // Left child
+        volatile AvlNode<AnyType>  right;       // Right child
+    }
+}
@@ -0,0 +1,165 @@
+import java.util.Collections;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Throughput comparison of ConcurrentAVLTree against the usual ways of
+ * sharing a sorted set: a TreeSet behind Collections.synchronizedSortedSet,
+ * an AVLTree behind one lock, and ConcurrentSkipListSet.  Each run fills
+ * the set with half of the key range and then lets every thread pick
+ * random keys, mostly reading, for a fixed time.
+ * <p>
+ * Usage: java ConcurrentAVLTreeBenchmark [millisPerRun] [maxThreads] [readPercent]
+ */
+public class ConcurrentAVLTreeBenchmark {
+
+    private static final int KEY_RANGE = 1 << 17;
+
+    /** The three operations measured, over boxed keys shared by all sets. */
+    private interface SortedIntSet {
+        boolean contains(Integer key);
+        boolean add(Integer key);
+        boolean remove(Integer key);
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        long millis = args.length > 0 ? Long.parseLong(args[0]) : 1000;
+        int maxThreads = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+        int readPercent = args.length > 2 ? Integer.parseInt(args[2]) : 80;
+
+        Integer[] keys = new Integer[KEY_RANGE];
+        for (int i = 0; i < KEY_RANGE; i++) {
+            keys[i] = i;
+        }
+
+        String[] names = {"ConcurrentAVLTree", "ConcurrentSkipListSet", "synchronized TreeSet", "synchronized AVLTree"};
+        List<Supplier<SortedIntSet>> factories = List.of(
+                ConcurrentAVLTreeBenchmark::concurrentAvl,
+                ConcurrentAVLTreeBenchmark::skipList,
+                ConcurrentAVLTreeBenchmark::synchronizedTreeSet,
+                ConcurrentAVLTreeBenchmark::synchronizedAvl
+        );
+
+        System.out.println(readPercent + "% contains, rest split between add and remove; "
+                + KEY_RANGE + " keys; " + millis + " ms per run; ops/ms");
+        System.out.printf("%8s", "threads");
+        for (String name : names) {
+            System.out.printf(" %22s", name);
+        }
+        System.out.println();
+
+        // Warm up every implementation once before measuring
+        for (Supplier<SortedIntSet> factory : factories) {
+            run(factory.get(), keys, 2, Math.min(millis, 500), readPercent);
+        }
+
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            System.out.printf("%8d", threads);
+            for (Supplier<SortedIntSet> factory : factories) {
+                long ops = run(factory.get(), keys, threads, millis, readPercent);
+                System.out.printf(" %22d", ops / millis);
+            }
+            System.out.println();
+        }
+    }
+
+    /**
+     * Fills set with half of the keys and runs the mixed workload.
+     * @return the number of operations completed by all threads
+     */
+    private static long run(SortedIntSet set, Integer[] keys, int threads, long millis, int readPercent)
+            throws InterruptedException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < KEY_RANGE / 2; i++) {
+            set.add(keys[random.nextInt(KEY_RANGE)]);
+        }
+
+        LongAdder operations = new LongAdder();
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+        long[] deadline = new long[1];
+        for (int t = 0; t < threads; t++) {
+            workers[t] = new Thread(() -> {
+                ThreadLocalRandom r = ThreadLocalRandom.current();
+                long count = 0;
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                while ((count & 0xFF) != 0 || System.nanoTime() < deadline[0]) {
+                    Integer key = keys[r.nextInt(KEY_RANGE)];
+                    int op = r.nextInt(100);
+                    if (op < readPercent)
+                        set.contains(key);
+                    else if ((op & 1) == 0)
+                        set.add(key);
+                    else
+                        set.remove(key);
+                    count++;
+                }
+                operations.add(count);
+            });
+            workers[t].start();
+        }
+        deadline[0] = System.nanoTime() + millis * 1_000_000;
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return operations.sum();
+    }
+
+    private static SortedIntSet concurrentAvl() {
+        ConcurrentAVLTree<Integer> tree = new ConcurrentAVLTree<>();
+        return new SortedIntSet() {
+            public boolean contains(Integer key) { return tree.contains(key); }
+            public boolean add(Integer key) { return tree.insert(key); }
+            public boolean remove(Integer key) { return tree.remove(key); }
+        };
+    }
+
+    private static SortedIntSet skipList() {
+        ConcurrentSkipListSet<Integer> set = new ConcurrentSkipListSet<>();
+        return new SortedIntSet() {
+            public boolean contains(Integer key) { return set.contains(key); }
+            public boolean add(Integer key) { return set.add(key); }
+            public boolean remove(Integer key) { return set.remove(key); }
+        };
+    }
+
+    private static SortedIntSet synchronizedTreeSet() {
+        SortedSet<Integer> set = Collections.synchronizedSortedSet(new TreeSet<>());
+        return new SortedIntSet() {
+            public boolean contains(Integer key) { return set.contains(key); }
+            public boolean add(Integer key) { return set.add(key); }
+            public boolean remove(Integer key) { return set.remove(key); }
+        };
+    }
+
+    private static SortedIntSet synchronizedAvl() {
+        AVLTree<Integer> tree = new AVLTree<>();
+        // AVLTree keeps duplicates, so add checks for the key under the same lock
+        return new SortedIntSet() {
+            public synchronized boolean contains(Integer key) { return tree.contains(key); }
+            public synchronized boolean add(Integer key) {
+                if (tree.contains(key))
+                    return false;
+                tree.insert(key);
+                return true;
+            }
+            public synchronized boolean remove(Integer key) {
+                if (!tree.contains(key))
+                    return false;
+                tree.remove(key);
+                return true;
+            }
+        };
+    }
+}
@@ -0,0 +1,18 @@
+/**
+ * Estimate of the number of moves still needed to solve a puzzle from a
+ * state.  Searches only guarantee shortest solutions when the estimate
+ * never exceeds the true number of moves.  One estimate serves every
+ * search of its puzzle, including searches running at the same time, so
+ * implementations must not keep per-call state.
+ */
+public interface Heuristic {
+
+    /**
+     * Estimates the moves left from a state.
+     * @param state     packed positions of the cars, see StateCodec
+     * @param stateHigh packed positions of the cars that do not fit in state
+     * @param occupancy occupied cells of the grid, see Bitboard
+     * @return a lower bound on the number of moves to a goal state
+     */
+    int estimate(long state, long stateHigh, long occupancy);
+}
@@ -0,0 +1,236 @@
+import java.util.Arrays;
+
+/**
+ * Iterative deepening A* (IDA*).  Each iteration is a depth first search
+ * that cuts off every path whose depth plus estimate passes a bound, and
+ * the next iteration raises the bound to the smallest value that was cut
+ * off, so the first solution found is a shortest one.  The search works
+ * on a single mutable board, the position of every car plus the occupancy
+ * bits, making each move in place and undoing it on the way back.  Apart
+ * from an optional fixed size transposition table its memory is therefore
+ * proportional to the solution depth, and Nodes are built only for the
+ * solution itself.
+ * <p>
+ * A car is never moved twice in a row, since the two slides could have
+ * been one.  The transposition table remembers, per slot, the last state
+ * entered in the current iteration and the depth it was entered at; a
+ * state entered again at no smaller depth has already been searched with
+ * at least as much of the bound left, so it is skipped.  Colliding states
+ * simply overwrite each other, which repeats work but never loses a
+ * shorter solution.
+ * <p>
+ * Moves form cycles, so the search cannot prove that a puzzle has no
+ * solution; give such puzzles a timeout or a node budget.
+ */
+public class IdaStarSearch {
+
+    /** Default number of transposition table slots. */
+    public static final int DEFAULT_TABLE_SIZE = 1 << 16;
+
+    /** Expansions between checks of the deadline. */
+    private static final int DEADLINE_CHECK_INTERVAL = 1024;
+
+    /** Returned by search once the goal is reached. */
+    private static final int FOUND = -1;
+
+    private final Puzzle puzzle;
+    private final Bitboard bitboard;
+    private final StateCodec codec;
+    private final Heuristic heuristic;
+    private final int goalPosition;
+
+    // Transposition table, empty when tableMask is -1
+    private final int tableMask;
+    private final long[] tableLow;
+    private final long[] tableHigh;
+    private final int[] tableIteration;
+    private final int[] tableDepth;
+
+    // The board, changed in place as the search moves
+    private int[] positions;
+    private long occupancy;
+    private long low;
+    private long high;
+
+    // Moves leading from the initial state to the board
+    private int[] pathCar = new int[64];
+    private int[] pathPosition = new int[64];
+
+    private int iteration;
+    private int nodesExpanded;
+    private int budget;
+    private long start;
+    private long timeoutNanos;
+    private SolveResult.Status stopped;
+    private int solutionDepth;
+
+    /**
+     * Construct a search of puzzle with a transposition table of the
+     * default size.
+     */
+    public IdaStarSearch(Puzzle puzzle) {
+        this(puzzle, DEFAULT_TABLE_SIZE);
+    }
+
+    /**
+     * @param puzzle    the puzzle to solve
+     * @param tableSize number of transposition table slots, rounded down to
+     *                  a power of two; 0 or less for no table
+     */
+    public IdaStarSearch(Puzzle puzzle, int tableSize) {
+        this.puzzle = puzzle;
+        this.bitboard = puzzle.getBitboard();
+        this.codec = puzzle.getCodec();
+        this.heuristic = puzzle.getHeuristic();
+        this.goalPosition = puzzle.getGridSize() - 1;
+        int slots = tableSize > 0 ? Integer.highestOneBit(tableSize) : 0;
+        this.tableMask = slots - 1;
+        this.tableLow = new long[slots];
+        this.tableHigh = new long[slots];
+        this.tableIteration = new int[slots];
+        this.tableDepth = new int[slots];
+    }
+
+    /**
+     * Runs the search.  A search object runs one search at a time.
+     * @param timeoutMillis give up after this long; 0 or less for no limit
+     * @param nodeBudget    give up after expanding this many states; 0 or less for no limit
+     * @return the outcome, with a shortest solution if one was found
+     */
+    public SolveResult solve(long timeoutMillis, int nodeBudget) {
+        start = System.nanoTime();
+        timeoutNanos = timeoutMillis > 0 ? timeoutMillis * 1_000_000L : Long.MAX_VALUE;
+        budget = nodeBudget > 0 ? nodeBudget : Integer.MAX_VALUE;
+        nodesExpanded = 0;
+        stopped = null;
+        String name = puzzle.getName();
+
+        Node root = puzzle.newInitNode();
+        positions = new int[puzzle.getNumCars()];
+        for (int v = 0; v < positions.length; v++) {
+            positions[v] = root.getCarPosition(v);
+        }
+        occupancy = bitboard.occupancy(positions);
+        low = codec.encodeLow(positions);
+        high = codec.encodeHigh(positions);
+        // Stamps of earlier runs must not match this one
+        Arrays.fill(tableIteration, 0);
+        iteration = 0;
+
+        int bound = estimate();
+        while (true) {
+            iteration++;
+            int next = search(0, bound, -1);
+            if (next == FOUND) {
+                Node solution = root;
+                for (int i = 0; i < solutionDepth; i++) {
+                    solution = solution.slide(pathCar[i], pathPosition[i]);
+                }
+                return new SolveResult(name, SolveResult.Status.SOLVED, solution, nodesExpanded, System.nanoTime() - start);
+            }
+            if (stopped != null)
+                return new SolveResult(name, stopped, null, nodesExpanded, System.nanoTime() - start);
+            if (next == Integer.MAX_VALUE)
+                return new SolveResult(name, SolveResult.Status.NO_SOLUTION, null, nodesExpanded, System.nanoTime() - start);
+            bound = next;
+        }
+    }
+
+    /**
+     * Searches below the board, which was reached in depth moves, the
+     * last of them by lastCar.
+     * @return FOUND, or the smallest depth plus estimate that passed bound,
+     *         or MAX_VALUE if nothing did or the search was stopped
+     */
+    private int search(int depth, int bound, int lastCar) {
+        int f = depth + estimate();
+        if (f > bound)
+            return f;
+        if (positions[Node.GOAL_CAR] == goalPosition) {
+            solutionDepth = depth;
+            return FOUND;
+        }
+        if (tableMask >= 0 && !enter(depth))
+            return Integer.MAX_VALUE;
+        if (nodesExpanded >= budget) {
+            stopped = SolveResult.Status.BUDGET_EXCEEDED;
+            return Integer.MAX_VALUE;
+        }
+        if (nodesExpanded % DEADLINE_CHECK_INTERVAL == 0 && System.nanoTime() - start > timeoutNanos) {
+            stopped = SolveResult.Status.TIMED_OUT;
+            return Integer.MAX_VALUE;
+        }
+        nodesExpanded++;
+
+        int next = Integer.MAX_VALUE;
+        for (int v = 0; v < positions.length; v++) {
+            if (v == lastCar)
+                continue;
+            int p = positions[v];
+            int min = bitboard.slideMin(v, p, occupancy);
+            int max = bitboard.slideMax(v, p, occupancy);
+            for (int np = min; np <= max; np++) {
+                if (np == p)
+                    continue;
+                move(v, p, np);
+                pushMove(depth, v, np);
+                int t = search(depth + 1, bound, v);
+                move(v, np, p);
+                if (t == FOUND)
+                    return FOUND;
+                if (stopped != null)
+                    return Integer.MAX_VALUE;
+                next = Math.min(next, t);
+            }
+        }
+        return next;
+    }
+
+    /**
+     * The estimate of the board by the puzzle's Heuristic.
+     */
+    private int estimate() {
+        return heuristic.estimate(low, high, occupancy);
+    }
+
+    /**
+     * Slides car v from position from to position to on the board.
+     */
+    private void move(int v, int from, int to) {
+        occupancy ^= bitboard.carCells(v, from) ^ bitboard.carCells(v, to);
+        positions[v] = to;
+        if (codec.inHighWord(v))
+            high = codec.withPosition(high, v, to);
+        else
+            low = codec.withPosition(low, v, to);
+    }
+
+    /**
+     * Records that move depth of the current path takes car v to position.
+     */
+    private void pushMove(int depth, int v, int position) {
+        if (depth == pathCar.length) {
+            pathCar = Arrays.copyOf(pathCar, depth * 2);
+            pathPosition = Arrays.copyOf(pathPosition, depth * 2);
+        }
+        pathCar[depth] = v;
+        pathPosition[depth] = position;
+    }
+
+    /**
+     * Records the board in the transposition table.
+     * @return false if this iteration already entered the board at no
+     *         greater depth
+     */
+    private boolean enter(int depth) {
+        int slot = StateCodec.hash(low, high) & tableMask;
+        if (tableIteration[slot] == iteration && tableLow[slot] == low && tableHigh[slot] == high
+                && tableDepth[slot] <= depth)
+            return false;
+        tableIteration[slot] = iteration;
+        tableLow[slot] = low;
+        tableHigh[slot] = high;
+        tableDepth[slot] = depth;
+        return true;
+    }
+}
@@ -0,0 +1,473 @@
+// IntAVLTree class
+//
+// CONSTRUCTION: with no initializer or an initial capacity
+//
+// ******************PUBLIC OPERATIONS*********************
+// void insert( x )       --> Insert x
+// void insert( x, v )    --> Insert x with payload v
+// void remove( x )       --> Remove x
+// boolean contains( x )  --> Return true if x is present
+// int get( x, missing )  --> Return payload of x, or missing if absent
+// int findMin( )         --> Return smallest item
+// int findMinValue( )    --> Return payload of smallest item
+// void deleteMin( )      --> Remove smallest item
+// int findMax( )         --> Return largest item
+// boolean isEmpty( )     --> Return true if empty; else false
+// int size( )            --> Return number of items
+// void makeEmpty( )      --> Remove all items
+// void printTree( )      --> Print tree in sorted order
+// ******************ERRORS********************************
+// findMin, findMinValue and findMax throw RuntimeException on an empty tree
+
+import java.util.Arrays;
+
+/**
+ * AVLTree specialized to int keys.  Keys, and an optional int payload,
+ * are compared with the relational operators instead of compareTo, and
+ * the balancing rules and the handling of equal keys are those of AVLTree.
+ * <p>
+ * There are no node objects.  A node is an index into parallel arrays
+ * of keys, payloads, children and heights, so a tree of any size is five
+ * arrays to the garbage collector and costs 17 bytes a node.  Index 0
+ * is the null node, with height -1.  Removed nodes are threaded through
+ * their left links onto a free list and reused before the arrays grow.
+ */
+public class IntAVLTree
+{
+    private static final int NIL = 0;
+
+    /**
+     * Construct the tree.
+     */
+    public IntAVLTree( )
+    {
+        this( 16 );
+    }
+
+    /**
+     * Construct the tree with room for capacity items before the arrays grow.
+     */
+    public IntAVLTree( int capacity )
+    {
+        allocate( Math.max( capacity, 1 ) + 1 );
+        makeEmpty( );
+    }
+
+    /**
+     * Insert into the tree with a payload of 0.
+     * @param key the item to insert.
+     */
+    public void insert( int key )
+    {
+        insert( key, 0 );
+    }
+
+    /**
+     * Insert into the tree; like AVLTree, an equal key is added again.
+     * @param key the item to insert.
+     * @param value the payload stored with it.
+     */
+    public void insert( int key, int value )
+    {
+        int fresh = newNode( key, value );
+        if( root == NIL )
+        {
+            root = fresh;
+            return;
+        }
+
+        int[] path = pathStack( );
+        int depth = 0;
+        int node = root;
+        boolean goLeft;
+        do
+        {
+            path[ depth++ ] = node;
+            goLeft = key < keys[ node ];
+            node = goLeft ? left[ node ] : right[ node ];
+        } while( node != NIL );
+
+        if( goLeft )
+            left[ path[ depth - 1 ] ] = fresh;
+        else
+            right[ path[ depth - 1 ] ] = fresh;
+        rebalancePath( path, depth );
+    }
+
+    /**
+     * Remove from the tree. Nothing is done if x is not found.
+     * @param key the item to remove.
+     */
+    public void remove( int key )
+    {
+        int[] path = pathStack( );
+        int depth = 0;
+        int node = root;
+        while( node != NIL && keys[ node ] != key )
+        {
+            path[ depth++ ] = node;
+            node = key < keys[ node ] ? left[ node ] : right[ node ];
+        }
+        if( node == NIL )
+            return;   // Item not found; do nothing
+
+        if( left[ node ] != NIL && right[ node ] != NIL ) // Two children
+        {
+            // Replace the entry with its successor and unlink the successor instead
+            path[ depth++ ] = node;
+            int successor = right[ node ];
+            while( left[ successor ] != NIL )
+            {
+                path[ depth++ ] = successor;
+                successor = left[ successor ];
+            }
+            keys[ node ] = keys[ successor ];
+            values[ node ] = values[ successor ];
+            node = successor;
+        }
+
+        int child = ( left[ node ] != NIL ) ? left[ node ] : right[ node ];
+        replaceChild( depth == 0 ? NIL : path[ depth - 1 ], node, child );
+        freeNode( node );
+        rebalancePath( path, depth );
+    }
+
+    /**
+     * Find an item in the tree.
+     * @param key the item to search for.
+     * @return true if x is found.
+     */
+    public boolean contains( int key )
+    {
+        return find( key ) != NIL;
+    }
+
+    /**
+     * Return the payload stored with an item.
+     * @param key the item to search for.
+     * @param missing the result if the item is absent.
+     * @return the payload of one node holding key, or missing.
+     */
+    public int get( int key, int missing )
+    {
+        int node = find( key );
+        return node == NIL ? missing : values[ node ];
+    }
+
+    /**
+     * Find the smallest item in the tree.
+     * @return smallest item.
+     */
+    public int findMin( )
+    {
+        if( isEmpty( ) )
+            throw new RuntimeException( );
+        return keys[ findMin( root ) ];
+    }
+
+    /**
+     * Return the payload of the smallest item in the tree.
+     */
+    public int findMinValue( )
+    {
+        if( isEmpty( ) )
+            throw new RuntimeException( );
+        return values[ findMin( root ) ];
+    }
+
+    /**
+     * Remove the smallest item from the tree. Nothing is done if the tree is empty.
+     */
+    public void deleteMin( )
+    {
+        if( root == NIL )
+            return;
+
+        int[] path = pathStack( );
+        int depth = 0;
+        int node = root;
+        while( left[ node ] != NIL )
+        {
+            path[ depth++ ] = node;
+            node = left[ node ];
+        }
+        replaceChild( depth == 0 ? NIL : path[ depth - 1 ], node, right[ node ] );
+        freeNode( node );
+        rebalancePath( path, depth );
+    }
+
+    /**
+     * Find the largest item in the tree.
+     * @return the largest item.
+     */
+    public int findMax( )
+    {
+        if( isEmpty( ) )
+            throw new RuntimeException( );
+        int node = root;
+        while( right[ node ] != NIL )
+            node = right[ node ];
+        return keys[ node ];
+    }
+
+    /**
+     * Make the tree logically empty.  The arrays keep their capacity.
+     */
+    public void makeEmpty( )
+    {
+        root = NIL;
+        size = 0;
+        used = 1;
+        free = NIL;
+        height[ NIL ] = -1;
+    }
+
+    /**
+     * Test if the tree is logically empty.
+     * @return true if empty, false otherwise.
+     */
+    public boolean isEmpty( )
+    {
+        return root == NIL;
+    }
+
+    /**
+     * Return the number of items in the tree.
+     */
+    public int size( )
+    {
+        return size;
+    }
+
+    /**
+     * Print the tree contents in sorted order.
+     */
+    public void printTree( String label )
+    {
+        System.out.println( label );
+        if( isEmpty( ) )
+            System.out.println( "Empty tree" );
+        else
+            printTree( root, "" );
+    }
+
+    /**
+     * Take a slot from the free list, or the next unused one, growing the
+     * arrays when both run out.
+     */
+    private int newNode( int key, int value )
+    {
+        int node = free;
+        if( node != NIL )
+            free = left[ node ];
+        else
+        {
+            if( used == keys.length )
+                allocate( keys.length * 2 );
+            node = used++;
+        }
+        keys[ node ] = key;
+        values[ node ] = value;
+        left[ node ] = NIL;
+        right[ node ] = NIL;
+        height[ node ] = 0;
+        size++;
+        return node;
+    }
+
+    /**
+     * Push an unlinked node onto the free list.
+     */
+    private void freeNode( int node )
+    {
+        left[ node ] = free;
+        free = node;
+        size--;
+    }
+
+    private void allocate( int capacity )
+    {
+        keys = keys == null ? new int[ capacity ] : Arrays.copyOf( keys, capacity );
+        values = values == null ? new int[ capacity ] : Arrays.copyOf( values, capacity );
+        left = left == null ? new int[ capacity ] : Arrays.copyOf( left, capacity );
+        right = right == null ? new int[ capacity ] : Arrays.copyOf( right, capacity );
+        height = height == null ? new byte[ capacity ] : Arrays.copyOf( height, capacity );
+    }
+
+    private static final int ALLOWED_IMBALANCE = 1;
+    // Assume node is either balanced or within one of being balanced
+    private int balance( int node )
+    {
+        if( height[ left[ node ] ] - height[ right[ node ] ] > ALLOWED_IMBALANCE )
+            if( height[ left[ left[ node ] ] ] >= height[ right[ left[ node ] ] ] )
+                node = rightRotation( node );
+            else
+                node = doubleRightRotation( node );
+        else
+        if( height[ right[ node ] ] - height[ left[ node ] ] > ALLOWED_IMBALANCE )
+            if( height[ right[ right[ node ] ] ] >= height[ left[ right[ node ] ] ] )
+                node = leftRotation( node );
+            else
+                node = doubleLeftRotation( node );
+
+        update( node );
+        return node;
+    }
+
+    /**
+     * Rebalance the nodes on a search path, deepest first, after a child
+     * of path[ depth - 1 ] changed, stopping at the first subtree whose
+     * height did not change.
+     */
+    private void rebalancePath( int[] path, int depth )
+    {
+        for( int i = depth - 1; i >= 0; i-- )
+        {
+            int node = path[ i ];
+            int oldHeight = height[ node ];
+            int balanced = balance( node );
+            if( balanced != node )
+                replaceChild( i == 0 ? NIL : path[ i - 1 ], node, balanced );
+            if( height[ balanced ] == oldHeight )
+                break;
+        }
+    }
+
+    /**
+     * Make replacement take the place of child under parent, or of the root
+     * if parent is NIL.
+     */
+    private void replaceChild( int parent, int child, int replacement )
+    {
+        if( parent == NIL )
+            root = replacement;
+        else if( left[ parent ] == child )
+            left[ parent ] = replacement;
+        else
+            right[ parent ] = replacement;
+    }
+
+    /**
+     * Return a stack large enough to hold any search path in the tree.
+     */
+    private int[] pathStack( )
+    {
+        int needed = height[ root ] + 2;
+        if( pathStack.length < needed )
+            pathStack = new int[ Math.max( needed, pathStack.length * 2 ) ];
+        return pathStack;
+    }
+
+    /**
+     * Internal method to find a node holding key.
+     * @return the node, or NIL if key is absent.
+     */
+    private int find( int key )
+    {
+        int node = root;
+        while( node != NIL )
+        {
+            if( key < keys[ node ] )
+                node = left[ node ];
+            else if( key > keys[ node ] )
+                node = right[ node ];
+            else
+                return node;    // Match
+        }
+        return NIL;   // No match
+    }
+
+    /**
+     * Internal method to find the smallest item in a subtree.
+     */
+    private int findMin( int node )
+    {
+        while( left[ node ] != NIL )
+            node = left[ node ];
+        return node;
+    }
+
+    /**
+     * Internal method to print a subtree in sorted order.
+     */
+    private void printTree( int node, String indent )
+    {
+        if( node != NIL )
+        {
+            printTree( right[ node ], indent + "   " );
+            System.out.println( indent + keys[ node ] + "(" + height[ node ] + ")" );
+            printTree( left[ node ], indent + "   " );
+        }
+    }
+
+    private void update( int node )
+    {
+        height[ node ] = (byte) ( Math.max( height[ left[ node ] ], height[ right[ node ] ] ) + 1 );
+    }
+
+    /**
+     * Rotate binary tree node with left child; a single rotation for case 1.
+     */
+    private int rightRotation( int node )
+    {
+        int theLeft = left[ node ];
+        left[ node ] = right[ theLeft ];
+        right[ theLeft ] = node;
+        update( node );
+        update( theLeft );
+        return theLeft;
+    }
+
+    /**
+     * Rotate binary tree node with right child; a single rotation for case 4.
+     */
+    private int leftRotation( int node )
+    {
+        int theRight = right[ node ];
+        right[ node ] = left[ theRight ];
+        left[ theRight ] = node;
+        update( node );
+        update( theRight );
+        return theRight;
+    }
+
+    /**
+     * Double rotation for case 2.
+     */
+    private int doubleRightRotation( int node )
+    {
+        left[ node ] = leftRotation( left[ node ] );
+        return rightRotation( node );
+    }
+
+    /**
+     * Double rotation for case 3.
+     */
+    private int doubleLeftRotation( int node )
+    {
+        right[ node ] = rightRotation( right[ node ] );
+        return leftRotation( node );
+    }
+
+    // Node fields, indexed by node; slot NIL is the null node
+    private int[]  keys;        // The key in the node
+    private int[]  values;      // Payload stored with the key
+    private int[]  left;        // Left child, or the next free slot
+    private int[]  right;       // Right child
+    private byte[] height;      // Height
+
+    /** The tree root. */
+    private int root;
+
+    /** Number of items in the tree. */
+    private int size;
+
+    /** Slots below used have been handed out at least once. */
+    private int used;
+
+    /** Head of the list of removed slots. */
+    private int free;
+
+    /** Scratch stack of the nodes on the current search path. */
+    private int[] pathStack = new int[ 32 ];
+}
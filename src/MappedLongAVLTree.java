@@ -0,0 +1,687 @@
+// MappedLongAVLTree class
+//
+// CONSTRUCTION: with a file path, and optionally a flush interval
+//
+// ******************PUBLIC OPERATIONS*********************
+// void insert( x )       --> Insert x
+// void insert( x, v )    --> Insert x with payload v
+// void remove( x )       --> Remove x
+// boolean contains( x )  --> Return true if x is present
+// long get( x, missing ) --> Return payload of x, or missing if absent
+// long findMin( )        --> Return smallest item
+// long findMinValue( )   --> Return payload of smallest item
+// void deleteMin( )      --> Remove smallest item
+// long findMax( )        --> Return largest item
+// boolean isEmpty( )     --> Return true if empty; else false
+// int size( )            --> Return number of items
+// void makeEmpty( )      --> Remove all items
+// void flush( )          --> Force all changes to the storage device
+// boolean checkBalance( )--> Return true if the file holds a valid AVL tree
+// void close( )          --> Flush and close the file
+// ******************ERRORS********************************
+// findMin, findMinValue and findMax throw RuntimeException on an empty tree;
+// updating or flushing after close throws IllegalStateException;
+// opening a damaged or foreign file throws IOException
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * LongAVLTree kept in a memory-mapped file instead of on the heap, so the
+ * tree can outgrow the heap, costs the garbage collector nothing, and is
+ * ready for use as soon as a later run reopens the file.
+ * <p>
+ * The file is a header followed by fixed-width 32 byte records, one per
+ * node, holding the key, payload, left and right child numbers and the
+ * height.  Node 0 is the null node, and removed nodes are threaded through
+ * their left links onto a free list, exactly as in LongAVLTree.  Records
+ * are mapped in chunks so the file can grow past the 2 GB limit of a
+ * single MappedByteBuffer.
+ * <p>
+ * Updates go to the page cache, which survives the process but not the
+ * machine.  They reach the device when flush is called, on close, and,
+ * if a flush interval was given, after every that many updates.  The
+ * header records whether the file was closed cleanly; if it was not, the
+ * tree is checked with checkBalance when it is reopened.
+ */
+public class MappedLongAVLTree implements Closeable
+{
+    private static final int NIL = 0;
+
+    private static final long MAGIC = 0x4c6f6e6741564c31L;   // "LongAVL1"
+
+    // Header layout
+    private static final int HEADER_BYTES = 64;
+    private static final int H_MAGIC = 0;
+    private static final int H_ROOT = 8;
+    private static final int H_USED = 12;
+    private static final int H_FREE = 16;
+    private static final int H_SIZE = 20;
+    private static final int H_CLEAN = 24;
+
+    // Record layout
+    private static final int RECORD_BYTES = 32;
+    private static final int R_KEY = 0;
+    private static final int R_VALUE = 8;
+    private static final int R_LEFT = 16;
+    private static final int R_RIGHT = 20;
+    private static final int R_HEIGHT = 24;
+
+    private static final int CHUNK_SHIFT = 16;
+    private static final int CHUNK_RECORDS = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_RECORDS - 1;
+    private static final long CHUNK_BYTES = (long) CHUNK_RECORDS * RECORD_BYTES;
+
+    /**
+     * Open the tree stored in file, creating an empty one if the file does
+     * not exist or is empty.  Changes reach the device only on flush and close.
+     * @param file the backing file.
+     * @throws IOException if the file cannot be mapped, is not a tree, or
+     * was not closed cleanly and no longer holds a valid tree.
+     */
+    public MappedLongAVLTree( Path file ) throws IOException
+    {
+        this( file, 0 );
+    }
+
+    /**
+     * Open the tree stored in file, creating an empty one if needed.
+     * @param file the backing file.
+     * @param flushInterval force changes to the device after this many
+     * updates; 0 leaves it to flush and close.
+     * @throws IOException if the file cannot be mapped, is not a tree, or
+     * was not closed cleanly and no longer holds a valid tree.
+     */
+    public MappedLongAVLTree( Path file, int flushInterval ) throws IOException
+    {
+        if( flushInterval < 0 )
+            throw new IllegalArgumentException( "flushInterval must not be negative" );
+        this.flushInterval = flushInterval;
+        channel = FileChannel.open( file, StandardOpenOption.CREATE,
+                                    StandardOpenOption.READ, StandardOpenOption.WRITE );
+        try
+        {
+            boolean fresh = channel.size( ) == 0;
+            header = map( 0, HEADER_BYTES );
+            if( fresh )
+            {
+                header.putLong( H_MAGIC, MAGIC );
+                used = 1;
+                mapThrough( NIL );
+                setHeight( NIL, -1 );
+                writeHeader( );
+            }
+            else
+            {
+                if( header.getLong( H_MAGIC ) != MAGIC )
+                    throw new IOException( file + " does not hold a MappedLongAVLTree" );
+                root = header.getInt( H_ROOT );
+                used = header.getInt( H_USED );
+                free = header.getInt( H_FREE );
+                size = header.getInt( H_SIZE );
+                if( used < 1 || (long) HEADER_BYTES + (long) used * RECORD_BYTES > channel.size( ) )
+                    throw new IOException( file + " is shorter than its header says" );
+                mapThrough( used - 1 );
+                if( header.get( H_CLEAN ) == 0 && !checkBalance( ) )
+                    throw new IOException( file + " was not closed cleanly and is damaged" );
+            }
+            header.put( H_CLEAN, (byte) 0 );
+            header.force( );
+        }
+        catch( IOException | RuntimeException e )
+        {
+            channel.close( );
+            throw e;
+        }
+    }
+
+    /**
+     * Insert into the tree with a payload of 0.
+     * @param key the item to insert.
+     */
+    public void insert( long key ) throws IOException
+    {
+        insert( key, 0 );
+    }
+
+    /**
+     * Insert into the tree; like AVLTree, an equal key is added again.
+     * @param key the item to insert.
+     * @param value the payload stored with it.
+     */
+    public void insert( long key, long value ) throws IOException
+    {
+        checkOpen( );
+        int fresh = newNode( key, value );
+        if( root == NIL )
+            root = fresh;
+        else
+        {
+            int[] path = pathStack( );
+            int depth = 0;
+            int node = root;
+            boolean goLeft;
+            do
+            {
+                path[ depth++ ] = node;
+                goLeft = key < key( node );
+                node = goLeft ? left( node ) : right( node );
+            } while( node != NIL );
+
+            if( goLeft )
+                setLeft( path[ depth - 1 ], fresh );
+            else
+                setRight( path[ depth - 1 ], fresh );
+            rebalancePath( path, depth );
+        }
+        updated( );
+    }
+
+    /**
+     * Remove from the tree. Nothing is done if x is not found.
+     * @param key the item to remove.
+     */
+    public void remove( long key ) throws IOException
+    {
+        checkOpen( );
+        int[] path = pathStack( );
+        int depth = 0;
+        int node = root;
+        while( node != NIL && key( node ) != key )
+        {
+            path[ depth++ ] = node;
+            node = key < key( node ) ? left( node ) : right( node );
+        }
+        if( node == NIL )
+            return;   // Item not found; do nothing
+
+        if( left( node ) != NIL && right( node ) != NIL ) // Two children
+        {
+            // Replace the entry with its successor and unlink the successor instead
+            path[ depth++ ] = node;
+            int successor = right( node );
+            while( left( successor ) != NIL )
+            {
+                path[ depth++ ] = successor;
+                successor = left( successor );
+            }
+            setKey( node, key( successor ) );
+            setValue( node, value( successor ) );
+            node = successor;
+        }
+
+        int child = ( left( node ) != NIL ) ? left( node ) : right( node );
+        replaceChild( depth == 0 ? NIL : path[ depth - 1 ], node, child );
+        freeNode( node );
+        rebalancePath( path, depth );
+        updated( );
+    }
+
+    /**
+     * Find an item in the tree.
+     * @param key the item to search for.
+     * @return true if x is found.
+     */
+    public boolean contains( long key )
+    {
+        return find( key ) != NIL;
+    }
+
+    /**
+     * Return the payload stored with an item.
+     * @param key the item to search for.
+     * @param missing the result if the item is absent.
+     * @return the payload of one node holding key, or missing.
+     */
+    public long get( long key, long missing )
+    {
+        int node = find( key );
+        return node == NIL ? missing : value( node );
+    }
+
+    /**
+     * Find the smallest item in the tree.
+     * @return smallest item.
+     */
+    public long findMin( )
+    {
+        if( isEmpty( ) )
+            throw new RuntimeException( );
+        return key( findMin( root ) );
+    }
+
+    /**
+     * Return the payload of the smallest item in the tree.
+     */
+    public long findMinValue( )
+    {
+        if( isEmpty( ) )
+            throw new RuntimeException( );
+        return value( findMin( root ) );
+    }
+
+    /**
+     * Remove the smallest item from the tree. Nothing is done if the tree is empty.
+     */
+    public void deleteMin( ) throws IOException
+    {
+        checkOpen( );
+        if( root == NIL )
+            return;
+
+        int[] path = pathStack( );
+        int depth = 0;
+        int node = root;
+        while( left( node ) != NIL )
+        {
+            path[ depth++ ] = node;
+            node = left( node );
+        }
+        replaceChild( depth == 0 ? NIL : path[ depth - 1 ], node, right( node ) );
+        freeNode( node );
+        rebalancePath( path, depth );
+        updated( );
+    }
+
+    /**
+     * Find the largest item in the tree.
+     * @return the largest item.
+     */
+    public long findMax( )
+    {
+        if( isEmpty( ) )
+            throw new RuntimeException( );
+        int node = root;
+        while( right( node ) != NIL )
+            node = right( node );
+        return key( node );
+    }
+
+    /**
+     * Make the tree logically empty.  The file keeps its length.
+     */
+    public void makeEmpty( ) throws IOException
+    {
+        checkOpen( );
+        root = NIL;
+        size = 0;
+        used = 1;
+        free = NIL;
+        updated( );
+    }
+
+    /**
+     * Test if the tree is logically empty.
+     * @return true if empty, false otherwise.
+     */
+    public boolean isEmpty( )
+    {
+        return root == NIL;
+    }
+
+    /**
+     * Return the number of items in the tree.
+     */
+    public int size( )
+    {
+        return size;
+    }
+
+    /**
+     * Force every change so far to the storage device.
+     */
+    public void flush( )
+    {
+        checkOpen( );
+        for( MappedByteBuffer chunk : chunks )
+            chunk.force( );
+        header.force( );
+        sinceFlush = 0;
+    }
+
+    /**
+     * Flush, mark the file as cleanly closed, and close it.  The mapping
+     * itself is released when the buffers are garbage collected, so from
+     * here on the tree refuses updates that would write to a file already
+     * marked clean.
+     */
+    @Override
+    public void close( ) throws IOException
+    {
+        if( closed )
+            return;
+        flush( );
+        closed = true;
+        header.put( H_CLEAN, (byte) 1 );
+        header.force( );
+        channel.close( );
+    }
+
+    /**
+     * Check what AVLTree.checkBalance checks, plus what a torn update
+     * could break: every stored height is right and within one of its
+     * sibling's, keys are in search tree order, the tree is acyclic, and
+     * the node count and free list agree with the header.
+     * @return true if the file holds a valid tree.
+     */
+    public boolean checkBalance( )
+    {
+        if( used < 1 || (long) used > (long) chunks.size( ) * CHUNK_RECORDS ||
+            height( NIL ) != -1 )
+            return false;
+        boolean[] seen = new boolean[ used ];
+        long[] count = new long[ 1 ];
+        if( checkBalance( root, Long.MIN_VALUE, Long.MAX_VALUE, seen, count ) == Integer.MIN_VALUE ||
+            count[ 0 ] != size )
+            return false;
+
+        // Every other slot below used must be on the free list, once
+        int node = free;
+        while( node != NIL )
+        {
+            if( node < 0 || node >= used || seen[ node ] )
+                return false;
+            seen[ node ] = true;
+            count[ 0 ]++;
+            node = left( node );
+        }
+        return count[ 0 ] == used - 1;
+    }
+
+    /**
+     * Check the subtree at node, whose keys must lie in [ lo, hi ].
+     * @return its height, or Integer.MIN_VALUE if it is damaged.
+     */
+    private int checkBalance( int node, long lo, long hi, boolean[] seen, long[] count )
+    {
+        if( node == NIL )
+            return -1;
+        if( node < 0 || node >= used || seen[ node ] )
+            return Integer.MIN_VALUE;
+        seen[ node ] = true;
+        count[ 0 ]++;
+
+        long key = key( node );
+        if( key < lo || key > hi )
+            return Integer.MIN_VALUE;
+        // Rotations can carry equal keys to either side
+        int hl = checkBalance( left( node ), lo, key, seen, count );
+        int hr = checkBalance( right( node ), key, hi, seen, count );
+        if( hl == Integer.MIN_VALUE || hr == Integer.MIN_VALUE ||
+            Math.abs( hl - hr ) > 1 || height( node ) != Math.max( hl, hr ) + 1 )
+            return Integer.MIN_VALUE;
+        return height( node );
+    }
+
+    /**
+     * Throw IllegalStateException once the tree has been closed.
+     */
+    private void checkOpen( )
+    {
+        if( closed )
+            throw new IllegalStateException( "MappedLongAVLTree is closed" );
+    }
+
+    /**
+     * Record the tree fields in the header and apply the flush policy.
+     */
+    private void updated( )
+    {
+        writeHeader( );
+        if( flushInterval > 0 && ++sinceFlush >= flushInterval )
+            flush( );
+    }
+
+    private void writeHeader( )
+    {
+        header.putInt( H_ROOT, root );
+        header.putInt( H_USED, used );
+        header.putInt( H_FREE, free );
+        header.putInt( H_SIZE, size );
+    }
+
+    /**
+     * Take a slot from the free list, or the next unused one, mapping
+     * another chunk of the file when both run out.
+     */
+    private int newNode( long key, long value ) throws IOException
+    {
+        int node = free;
+        if( node != NIL )
+            free = left( node );
+        else
+        {
+            if( used == Integer.MAX_VALUE )
+                throw new IOException( "MappedLongAVLTree is full" );
+            node = used++;
+            mapThrough( node );
+        }
+        setKey( node, key );
+        setValue( node, value );
+        setLeft( node, NIL );
+        setRight( node, NIL );
+        setHeight( node, 0 );
+        size++;
+        return node;
+    }
+
+    /**
+     * Push an unlinked node onto the free list.
+     */
+    private void freeNode( int node )
+    {
+        setLeft( node, free );
+        free = node;
+        size--;
+    }
+
+    /**
+     * Map chunks until the one holding record node is mapped.
+     */
+    private void mapThrough( int node ) throws IOException
+    {
+        while( chunks.size( ) <= ( node >>> CHUNK_SHIFT ) )
+            chunks.add( map( HEADER_BYTES + chunks.size( ) * CHUNK_BYTES, CHUNK_BYTES ) );
+    }
+
+    private MappedByteBuffer map( long position, long length ) throws IOException
+    {
+        MappedByteBuffer buffer = channel.map( FileChannel.MapMode.READ_WRITE, position, length );
+        buffer.order( ByteOrder.LITTLE_ENDIAN );
+        return buffer;
+    }
+
+    // Record accessors
+    private MappedByteBuffer chunk( int node )
+    {
+        return chunks.get( node >>> CHUNK_SHIFT );
+    }
+
+    private static int offset( int node )
+    {
+        return ( node & CHUNK_MASK ) * RECORD_BYTES;
+    }
+
+    private long key( int node )                 { return chunk( node ).getLong( offset( node ) + R_KEY ); }
+    private long value( int node )               { return chunk( node ).getLong( offset( node ) + R_VALUE ); }
+    private int left( int node )                 { return chunk( node ).getInt( offset( node ) + R_LEFT ); }
+    private int right( int node )                { return chunk( node ).getInt( offset( node ) + R_RIGHT ); }
+    private int height( int node )               { return chunk( node ).getInt( offset( node ) + R_HEIGHT ); }
+    private void setKey( int node, long key )    { chunk( node ).putLong( offset( node ) + R_KEY, key ); }
+    private void setValue( int node, long value ){ chunk( node ).putLong( offset( node ) + R_VALUE, value ); }
+    private void setLeft( int node, int child )  { chunk( node ).putInt( offset( node ) + R_LEFT, child ); }
+    private void setRight( int node, int child ) { chunk( node ).putInt( offset( node ) + R_RIGHT, child ); }
+    private void setHeight( int node, int h )    { chunk( node ).putInt( offset( node ) + R_HEIGHT, h ); }
+
+    private static final int ALLOWED_IMBALANCE = 1;
+    // Assume node is either balanced or within one of being balanced
+    private int balance( int node )
+    {
+        int l = left( node );
+        int r = right( node );
+        if( height( l ) - height( r ) > ALLOWED_IMBALANCE )
+            if( height( left( l ) ) >= height( right( l ) ) )
+                node = rightRotation( node );
+            else
+                node = doubleRightRotation( node );
+        else
+        if( height( r ) - height( l ) > ALLOWED_IMBALANCE )
+            if( height( right( r ) ) >= height( left( r ) ) )
+                node = leftRotation( node );
+            else
+                node = doubleLeftRotation( node );
+
+        update( node );
+        return node;
+    }
+
+    /**
+     * Rebalance the nodes on a search path, deepest first, after a child
+     * of path[ depth - 1 ] changed, stopping at the first subtree whose
+     * height did not change.
+     */
+    private void rebalancePath( int[] path, int depth )
+    {
+        for( int i = depth - 1; i >= 0; i-- )
+        {
+            int node = path[ i ];
+            int oldHeight = height( node );
+            int balanced = balance( node );
+            if( balanced != node )
+                replaceChild( i == 0 ? NIL : path[ i - 1 ], node, balanced );
+            if( height( balanced ) == oldHeight )
+                break;
+        }
+    }
+
+    /**
+     * Make replacement take the place of child under parent, or of the root
+     * if parent is NIL.
+     */
+    private void replaceChild( int parent, int child, int replacement )
+    {
+        if( parent == NIL )
+            root = replacement;
+        else if( left( parent ) == child )
+            setLeft( parent, replacement );
+        else
+            setRight( parent, replacement );
+    }
+
+    /**
+     * Return a stack large enough to hold any search path in the tree.
+     */
+    private int[] pathStack( )
+    {
+        int needed = height( root ) + 2;
+        if( pathStack.length < needed )
+            pathStack = new int[ Math.max( needed, pathStack.length * 2 ) ];
+        return pathStack;
+    }
+
+    /**
+     * Internal method to find a node holding key.
+     * @return the node, or NIL if key is absent.
+     */
+    private int find( long key )
+    {
+        int node = root;
+        while( node != NIL )
+        {
+            long nodeKey = key( node );
+            if( key < nodeKey )
+                node = left( node );
+            else if( key > nodeKey )
+                node = right( node );
+            else
+                return node;    // Match
+        }
+        return NIL;   // No match
+    }
+
+    /**
+     * Internal method to find the smallest item in a subtree.
+     */
+    private int findMin( int node )
+    {
+        while( left( node ) != NIL )
+            node = left( node );
+        return node;
+    }
+
+    private void update( int node )
+    {
+        setHeight( node, Math.max( height( left( node ) ), height( right( node ) ) ) + 1 );
+    }
+
+    /**
+     * Rotate binary tree node with left child; a single rotation for case 1.
+     */
+    private int rightRotation( int node )
+    {
+        int theLeft = left( node );
+        setLeft( node, right( theLeft ) );
+        setRight( theLeft, node );
+        update( node );
+        update( theLeft );
+        return theLeft;
+    }
+
+    /**
+     * Rotate binary tree node with right child; a single rotation for case 4.
+     */
+    private int leftRotation( int node )
+    {
+        int theRight = right( node );
+        setRight( node, left( theRight ) );
+        setLeft( theRight, node );
+        update( node );
+        update( theRight );
+        return theRight;
+    }
+
+    /**
+     * Double rotation for case 2.
+     */
+    private int doubleRightRotation( int node )
+    {
+        setLeft( node, leftRotation( left( node ) ) );
+        return rightRotation( node );
+    }
+
+    /**
+     * Double rotation for case 3.
+     */
+    private int doubleLeftRotation( int node )
+    {
+        setRight( node, rightRotation( right( node ) ) );
+        return leftRotation( node );
+    }
+
+    private final FileChannel channel;
+    private final MappedByteBuffer header;
+    private final List<MappedByteBuffer> chunks = new ArrayList<>( );
+    private final int flushInterval;
+
+    /** Updates since the last flush. */
+    private int sinceFlush;
+
+    /** Set by close; the mappings outlive the channel. */
+    private boolean closed;
+
+    // Copies of the header fields
+    private int root;
+    private int size;
+    private int used;
+    private int free;
+
+    /** Scratch stack of the nodes on the current search path. */
+    private int[] pathStack = new int[ 32 ];
+}
@@ -1,46 +1,72 @@
-import java.util.ArrayList;
+import java.util.Arrays;
 
 public class Node implements Comparable<Node> {
 
-    private String history;   //Sequence of moves to get to this state
     private Node parent;      //Node from which this node was expanded
     private Node next;
     private Puzzle puzzle;    // Puzzle this node is trying to solve
-    private int varPos[];     //Starting point of the variable location of car
-    private String move;      //Most recent move  in format Cx.y  where Car x is moved to location y.
-    private int depth;        //Total number of moves in history
-    private int grid[][];     //Current contents of grid in terms of car number.
-    private int hashcode;     // state of grid in coded form (for easy comparison)
+    private long state;       //Variable location of cars packed by the puzzle's StateCodec
+    private long stateHigh;   //Variable location of cars that do not fit in state
+    private long occupancy;   //Occupied cells of the grid, see Bitboard
+    private short move;       //Most recent move packed as car << 8 | location, see getMove()
+    private int depth;        //Total number of moves to get here
     private int stepsTo;      // estimated number of remaining moves to reach a solution
-    private Integer priority; //depth + stepsTo
+    private int priority;     //depth + stepsTo
+    private int heapSlot = -1; //Index of this node in a NodeHeap, -1 when not in one
 
 
 
-    final int GOAL_CAR = 0;
+    static final int GOAL_CAR = 0;
+    private static final short NO_MOVE = -1;
+    private static final int MOVE_CAR_SHIFT = 8;
+    private static final int MOVE_POSITION_MASK = 0xFF;
     /**
-     * @param parent  the parent of this node
-     * @param history the moves needed to get here
+     * Creates the root node of a puzzle.
      * @param puzzle  Puzzle being solved
      * @param varPos  Variable location of cars
-     * @param move    Last Move
-     * @param depth   Total number of moves to get to this node
      */
-    Node(Node parent, String history, Puzzle puzzle, int[] varPos, String move, int depth, int stepsTo
-    ) {
-        this.history  =   history;
-        this.parent   =   parent;
+    Node(Puzzle puzzle, int[] varPos) {
+        StateCodec codec = puzzle.getCodec();
         this.puzzle   =   puzzle;
-        this.varPos   =   varPos;
-        this.move     =   move;
-        this.depth    =   depth;
+        this.state    =   codec.encodeLow(varPos);
+        this.stateHigh =  codec.encodeHigh(varPos);
+        this.occupancy =  puzzle.getBitboard().occupancy(varPos);
+        this.move     =   NO_MOVE;
+        this.depth    =   0;
+        this.stepsTo  =   setStepsTo();
+        this.priority =   this.depth + this.stepsTo;
+    }
+
+    /**
+     * Creates the node reached from parent by sliding one car.
+     * @param parent   the parent of this node
+     * @param car      the car that is moved
+     * @param from     the variable location of car in parent
+     * @param position the new variable location of car
+     */
+    private Node(Node parent, int car, int from, int position) {
+        StateCodec codec = parent.puzzle.getCodec();
+        this.parent   =   parent;
+        this.puzzle   =   parent.puzzle;
+        this.state    =   parent.state;
+        this.stateHigh =  parent.stateHigh;
+        if (codec.inHighWord(car))
+            this.stateHigh = codec.withPosition(stateHigh, car, position);
+        else
+            this.state = codec.withPosition(state, car, position);
+        // Only the moved car's cells change, so clear its old cells and set its new ones
+        Bitboard bitboard = puzzle.getBitboard();
+        this.occupancy =  parent.occupancy
+                ^ bitboard.carCells(car, from)
+                ^ bitboard.carCells(car, position);
+        this.move     =   (short) (car << MOVE_CAR_SHIFT | position);
+        this.depth    =   parent.depth + 1;
         this.stepsTo  =   setStepsTo();
         this.priority =   this.depth + this.stepsTo;
-        getGrid();
-        computeHashCode();
     }
     @Override
     public int compareTo(Node b2){
-        return (this.priority.compareTo( b2.priority));
+        return Integer.compare(this.priority, b2.priority);
     }
 
     public Node getParent() {
@@ -51,8 +77,22 @@ public class Node implements Comparable<Node> {
         return depth;
     }
 
+    /**
+     * Returns depth + stepsTo, the key Nodes are ordered on.
+     */
+    public int getPriority() {
+        return priority;
+    }
+
     public int hashCode() {
-        return hashcode;
+        return StateCodec.hash(state, stateHigh);
+    }
+
+    /**
+     * Returns the variable location of car v in this state.
+     */
+    public int getCarPosition(int v) {
+        return puzzle.getCodec().position(state, stateHigh, v);
     }
 
     /**
@@ -61,11 +101,11 @@ public class Node implements Comparable<Node> {
      * element of this grid is equal to -1 if square (i,j) is
      * unoccupied, and otherwise contains the index of the car
      * occupying this square.  Note that the grid is recomputed each
-     * time this method is called.
+     * time this method is called, so it is only used for display.
      */
-    private void getGrid() {
+    private int[][] getGrid() {
         int gridsize = puzzle.getGridSize();
-        grid = new int[gridsize][gridsize];
+        int[][] grid = new int[gridsize][gridsize];
 
         // populates grid with "-1"s
         for (int i = 0; i < gridsize; i++) {
@@ -80,33 +120,59 @@ public class Node implements Comparable<Node> {
             boolean orient = puzzle.getCarOrient(v);
             int size = puzzle.getCarSize(v);
             int fp = puzzle.getFixedPosition(v);
-            if (v == GOAL_CAR && varPos[v] + size > gridsize) {
+            int p = getCarPosition(v);
+            if (v == GOAL_CAR && p + size > gridsize) {
                 size--;
             }
             if (orient) {
                 for (int d = 0; d < size; d++)
-                    grid[fp][varPos[v] + d] = v;
+                    grid[fp][p + d] = v;
             } else {
                 for (int d = 0; d < size; d++)
-                    grid[varPos[v] + d][fp] = v;
+                    grid[p + d][fp] = v;
             }
         }
-
+        return grid;
     }
 
 
     public String toString() {
-        return puzzle.getName() + " " + history + " [" + depth + "]\n" + displayGrid() + "\n";
+        return puzzle.getName() + " " + getHistory() + " [" + depth + "]\n" + displayGrid() + "\n";
+    }
+
+    /**
+     * Returns the most recent move in format Cx.y where Car x is moved to
+     * location y, or "Initial" for the root.
+     */
+    public String getMove() {
+        if (move == NO_MOVE)
+            return "Initial";
+        return " C" + (move >> MOVE_CAR_SHIFT) + "." + (move & MOVE_POSITION_MASK);
+    }
+
+    /**
+     * Rebuilds the sequence of moves to get to this state by walking the
+     * parent chain, so nodes do not have to carry a copy of it.
+     */
+    public String getHistory() {
+        String[] moves = new String[depth];
+        Node n = this;
+        for (int i = depth - 1; i >= 0; i--) {
+            moves[i] = n.getMove();
+            n = n.parent;
+        }
+        return String.join("", moves);
     }
 
     public boolean isGoal() {
-        return (varPos[0] == puzzle.getGridSize() - 1);
+        return (getCarPosition(GOAL_CAR) == puzzle.getGridSize() - 1);
     }
 
     public String displayGrid() {
         String symb = "0123456789ABCDEFGHIJKLMNPQRSTUVWXYZ@#$%^&*?!";
         StringBuilder sb = new StringBuilder();
         int gridsize = puzzle.getGridSize();
+        int[][] grid = getGrid();
 
         // print top line
 
@@ -138,7 +204,7 @@ public class Node implements Comparable<Node> {
         }
         sb.append("+");
         // When lots of states are printed, I found it helpful to search for them by code.
-        sb.append(" HashCode " + hashcode + "\n");
+        sb.append(" HashCode " + hashCode() + "\n");
 
         return sb.toString();
     }
@@ -148,46 +214,46 @@ public class Node implements Comparable<Node> {
      * Node and returns them as an array of Nodes.
      */
     public Node[] expand() {
-        int gridsize = puzzle.getGridSize();
-        int num_cars = puzzle.getNumCars();
+        Node[] children = new Node[puzzle.getMaxSuccessors()];
+        return Arrays.copyOf(children, expand(children));
+    }
 
-        ArrayList<Node> new_nodes = new ArrayList<Node>();
+    /**
+     * Computes all of the Nodes immediately reachable from this Node
+     * and stores them at the front of children.  The array must hold at
+     * least Puzzle.getMaxSuccessors() entries, so one buffer can be
+     * reused for every expansion of a search.
+     * @param children buffer receiving the new Nodes
+     * @return the number of Nodes stored in children
+     */
+    public int expand(Node[] children) {
+        int num_cars = puzzle.getNumCars();
+        Bitboard bitboard = puzzle.getBitboard();
+        int count = 0;
 
         for (int v = 0; v < num_cars; v++) {
-            int p = varPos[v];
-            int fp = puzzle.getFixedPosition(v);
-            boolean orient = puzzle.getCarOrient(v);
+            int p = getCarPosition(v);
             // Find all locations to left or up from current position
-            for (int np = p - 1;
-                 np >= 0 && (orient ? grid[fp][np] : grid[np][fp]) < 0;
-                 np--) {
-                int[] newVarPos = (int[]) varPos.clone();
-                newVarPos[v] = np;
-                String move = " C" + v + "." + newVarPos[v];
-                /*
-                stepsTo is hardcoded to 0
-                 */
-                new_nodes.add(new Node(this, (history + move), puzzle, newVarPos, move, depth + 1, 0));
+            int min = bitboard.slideMin(v, p, occupancy);
+            for (int np = p - 1; np >= min; np--) {
+                children[count++] = new Node(this, v, p, np);
             }
-
             // Find all locations to right or down from current position
-            //Original code used tertiary operators, so I left it in for "exposure"
-            int carsize = puzzle.getCarSize(v);
-            for (int np = p + carsize;
-                 ((np < gridsize) && ((orient ? grid[fp][np] : grid[np][fp]) < 0))
-                         || ((v == GOAL_CAR) && (np == gridsize));
-                 np++) {
-                int[] newVarPos = (int[]) varPos.clone();
-                newVarPos[v] = np - carsize + 1;
-                String move = " C" + v + "." + newVarPos[v];
-                /*
-                stepsTo is hardcoded to 0
-                 */
-                new_nodes.add(new Node(this, (history + move), puzzle, newVarPos, move, depth + 1, 0));
+            int max = bitboard.slideMax(v, p, occupancy);
+            for (int np = p + 1; np <= max; np++) {
+                children[count++] = new Node(this, v, p, np);
             }
-
         }
-        return (Node[]) new_nodes.toArray(new Node[0]);
+        return count;
+    }
+
+    /**
+     * Returns the Node reached by moving car v to position.  The caller
+     * must know the move is legal, for instance because it replays a move
+     * found by expand.
+     */
+    Node slide(int v, int position) {
+        return new Node(this, v, getCarPosition(v), position);
     }
 
     /**
@@ -196,28 +262,15 @@ public class Node implements Comparable<Node> {
      * Adjust what is checked to satisfy they way you intend to use it.
      */
     public boolean equals(Object o) {
-        Node s;
-        try {
-            s = (Node) o;
-        } catch (ClassCastException e) {
-            return false;
-        }
-        if (hashcode != s.hashcode)
+        if (!(o instanceof Node))
             return false;
-
-        for (int i = 0; i < varPos.length; i++)
-            if (varPos[i] != s.varPos[i])
-                return false;
-        return true;
+        Node s = (Node) o;
+        return state == s.state && stateHigh == s.stateHigh;
     }
 
-    private void computeHashCode() {
-        final int SHIFT=31;
-        hashcode = 0;
-        for (int i = 0; i < varPos.length; i++) {
-            hashcode = SHIFT * hashcode + varPos[i];
-        }
-    }
+    int getHeapSlot(){return heapSlot;}
+
+    void setHeapSlot(int slot){heapSlot = slot;}
 
     public Node getNext(){return next;}
 
@@ -225,40 +278,11 @@ public class Node implements Comparable<Node> {
 
 
     /**
-     * calculates the estimated steps until
+     * calculates the estimated steps until a solution with the puzzle's
+     * Heuristic
      * @return stepsTo
      */
     private int setStepsTo(){
-        getGrid();
-        int stepsTo = 0;
-        int row = -1;
-        int gridSize = puzzle.getGridSize();
-
-//        for (int i = 0; i < gridSize; i++) {
-//            for (int j = 0; j < gridSize; j++) {
-//                if (grid[j][i] == -1){
-//                    System.out.print(" x ");}
-//                else{
-//
-//                System.out.print(" " + grid[j][i] + " ");}
-//
-//                }
-//            System.out.println("");
-//        }
-
-        for (int i = 0; i < gridSize; i++) {
-            for (int j = 0; j < gridSize; j++) {
-                if (grid[j][i] == 0){
-                    row = i;
-                    break;
-                }
-            }
-        }
-        boolean passed = false;
-        for (int j=0; j < gridSize; j++){
-            if (grid[j][row] == 0) passed = true;
-            if (passed && grid[j][row] != 0 && grid[j][row] != -1){stepsTo++;}
-        }
-        return stepsTo;
+        return puzzle.getHeuristic().estimate(state, stateHigh, occupancy);
     }
 }
@@ -0,0 +1,133 @@
+import java.util.Arrays;
+
+/**
+ * Array backed d-ary min-heap of Nodes ordered on priority.  Every Node
+ * remembers its slot in the heap, so once the search has found the stale
+ * Node for a state (through its StateTable) a better path to that state
+ * replaces the entry in place instead of adding a duplicate.
+ */
+public class NodeHeap implements OpenList {
+
+    private static final int DEFAULT_ARITY = 4;
+    private static final int DEFAULT_CAPACITY = 256;
+
+    private final int arity;
+    private Node[] heap;
+    private int size;
+
+    /**
+     * Construct a 4-ary heap.
+     */
+    public NodeHeap() {
+        this(DEFAULT_ARITY);
+    }
+
+    /**
+     * Construct a heap in which every slot has arity children.
+     * @param arity the number of children per slot, at least 2
+     */
+    public NodeHeap(int arity) {
+        if (arity < 2)
+            throw new IllegalArgumentException("Heap arity must be at least 2");
+        this.arity = arity;
+        this.heap = new Node[DEFAULT_CAPACITY];
+    }
+
+    @Override
+    public void add(Node node) {
+        if (size == heap.length)
+            heap = Arrays.copyOf(heap, size * 2);
+        siftUp(size++, node);
+    }
+
+    @Override
+    public Node poll() {
+        if (size == 0)
+            return null;
+        Node min = heap[0];
+        Node last = heap[--size];
+        heap[size] = null;
+        if (size > 0)
+            siftDown(0, last);
+        min.setHeapSlot(-1);
+        return min;
+    }
+
+    /**
+     * Returns the Node of smallest priority without removing it.
+     * @return the smallest Node, or null if the heap is empty
+     */
+    public Node peek() {
+        return size == 0 ? null : heap[0];
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Decrease-key: better takes over the slot of stale if stale is still
+     * in the heap, otherwise better is added.
+     */
+    @Override
+    public void replace(Node stale, Node better) {
+        int slot = stale.getHeapSlot();
+        if (slot < 0 || slot >= size || heap[slot] != stale) {
+            add(better);
+            return;
+        }
+        stale.setHeapSlot(-1);
+        if (better.compareTo(stale) <= 0)
+            siftUp(slot, better);
+        else
+            siftDown(slot, better);
+    }
+
+    /**
+     * Moves node up from slot until its parent is no larger.
+     */
+    private void siftUp(int slot, Node node) {
+        while (slot > 0) {
+            int parent = (slot - 1) / arity;
+            Node p = heap[parent];
+            if (node.compareTo(p) >= 0)
+                break;
+            place(slot, p);
+            slot = parent;
+        }
+        place(slot, node);
+    }
+
+    /**
+     * Moves node down from slot until none of its children is smaller.
+     */
+    private void siftDown(int slot, Node node) {
+        while (true) {
+            int first = slot * arity + 1;
+            if (first >= size)
+                break;
+            int last = Math.min(first + arity, size);
+            int smallest = first;
+            for (int c = first + 1; c < last; c++) {
+                if (heap[c].compareTo(heap[smallest]) < 0)
+                    smallest = c;
+            }
+            if (heap[smallest].compareTo(node) >= 0)
+                break;
+            place(slot, heap[smallest]);
+            slot = smallest;
+        }
+        place(slot, node);
+    }
+
+    private void place(int slot, Node node) {
+        heap[slot] = node;
+        node.setHeapSlot(slot);
+    }
+}
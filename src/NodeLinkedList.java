@@ -1,3 +1,7 @@
+/**
+ * FIFO queue of Nodes threaded through Node.getNext(), so adding and
+ * removing are both constant time and no extra link objects are allocated.
+ */
 public class NodeLinkedList {
     private Node head;
     private Node tail;
@@ -5,23 +9,40 @@ public class NodeLinkedList {
 
     public NodeLinkedList(Node head){
         this.head = head;
-        this.head.setNext(tail);
+        this.tail = head;
+        this.head.setNext(null);
         this.size = 1;
     }
     public Node getHead(){return head;}
 
     public void add(Node newNode){
-        if (tail == null){
-            head.setNext(newNode);
-            tail = newNode;
+        newNode.setNext(null);
+        if (head == null){
+            head = newNode;
         }
         else{
-        tail.setNext(newNode);
-        tail = newNode;
+            tail.setNext(newNode);
         }
+        tail = newNode;
         this.size = this.size + 1;
     }
 
+    /**
+     * Removes and returns the oldest Node in the queue.
+     * @return the head of the queue, or null if the queue is empty
+     */
+    public Node poll(){
+        Node first = head;
+        if (first == null){return null;}
+        head = first.getNext();
+        if (head == null){tail = null;}
+        first.setNext(null);
+        this.size = this.size - 1;
+        return first;
+    }
+
+    public boolean isEmpty(){return head == null;}
+
     public int getSize(){return size;}
 
     public Node find(int index){
@@ -32,4 +53,4 @@ public class NodeLinkedList {
         return returnNode;
     }
 
-}
\ No newline at end of file
+}
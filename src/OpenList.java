@@ -0,0 +1,33 @@
+/**
+ * The open list of an A* search: Nodes waiting to be expanded, removed in
+ * order of increasing priority (depth + stepsTo).
+ */
+public interface OpenList {
+
+    /**
+     * Adds a Node to the list.
+     * @param node the Node to add
+     */
+    void add(Node node);
+
+    /**
+     * Removes and returns a Node of smallest priority.
+     * @return the removed Node, or null if the list is empty
+     */
+    Node poll();
+
+    boolean isEmpty();
+
+    int size();
+
+    /**
+     * Called when a better path to the state of stale has been found.
+     * Lists that can locate stale update it in place; by default better
+     * is simply added and stale is left to be skipped by the search.
+     * @param stale  the Node previously added for this state
+     * @param better the Node with the lower priority
+     */
+    default void replace(Node stale, Node better) {
+        add(better);
+    }
+}
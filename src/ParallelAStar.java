@@ -0,0 +1,272 @@
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Hash distributed A* (HDA*): every worker thread owns the states whose
+ * hash maps to it, and keeps the open list and best-known Nodes of those
+ * states only, so no table or queue is shared.  A child owned by another
+ * worker is buffered and sent in batches through that worker's lock-free
+ * mailbox.
+ * <p>
+ * The first goal found is only an incumbent.  Every worker drops Nodes
+ * whose priority cannot beat it, and the search ends when all workers
+ * are idle with no batch in flight, at which point nothing cheaper can
+ * remain because the heuristic never overestimates.  Idleness is tracked
+ * by one counter of active workers plus unread batches: a sender counts a
+ * batch before posting it, and an idle worker counts itself active again
+ * before it lets go of the batch it took, so the counter only reaches
+ * zero once there is no work left anywhere.
+ */
+public class ParallelAStar {
+
+    /** Nodes per mailbox message. */
+    private static final int BATCH_SIZE = 64;
+
+    /** Expansions between reading the mailbox and flushing partial batches. */
+    private static final int EXPANSIONS_PER_ROUND = 128;
+
+    /** Mailbox checks an idle worker spins through before yielding its core. */
+    private static final int IDLE_SPINS = 64;
+
+    private final Puzzle puzzle;
+    private final Worker[] workers;
+    private final AtomicLong pending = new AtomicLong();
+    private final AtomicReference<Node> incumbent = new AtomicReference<>();
+
+    /**
+     * Construct a search of puzzle from its initial Node.
+     * @param puzzle  the puzzle to solve
+     * @param threads the number of worker threads, at least 1
+     */
+    public ParallelAStar(Puzzle puzzle, int threads) {
+        if (threads < 1)
+            throw new IllegalArgumentException("At least one worker thread is needed");
+        this.puzzle = puzzle;
+        this.workers = new Worker[threads];
+        for (int w = 0; w < threads; w++) {
+            workers[w] = new Worker(w);
+        }
+    }
+
+    /**
+     * Runs the search to completion.  A search object can only be run once.
+     * @return a goal Node of minimum depth, or null if there is none
+     * @throws InterruptedException if interrupted while waiting for the workers
+     */
+    public Node solve() throws InterruptedException {
+        Node root = puzzle.newInitNode();
+        if (root.isGoal())
+            return root;
+        pending.set(workers.length);
+        workers[owner(root)].receive(root);
+
+        Thread[] threads = new Thread[workers.length];
+        for (int w = 0; w < workers.length; w++) {
+            threads[w] = new Thread(workers[w], puzzle.getName() + "-hda-" + w);
+            threads[w].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return incumbent.get();
+    }
+
+    /**
+     * Returns the number of Nodes expanded by all workers; valid once
+     * solve has returned.
+     */
+    public int getNodesExpanded() {
+        int total = 0;
+        for (Worker worker : workers) {
+            total += worker.nodesExpanded;
+        }
+        return total;
+    }
+
+    /**
+     * Maps a state to the worker that owns it.
+     */
+    private int owner(Node node) {
+        int h = node.hashCode();
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        return (h & 0x7FFFFFFF) % workers.length;
+    }
+
+    /**
+     * Returns the depth of the best goal found so far, or MAX_VALUE.
+     */
+    private int bound() {
+        Node best = incumbent.get();
+        return best == null ? Integer.MAX_VALUE : best.getDepth();
+    }
+
+    /**
+     * Records goal if it is shallower than the current incumbent.
+     */
+    private void offerGoal(Node goal) {
+        while (true) {
+            Node best = incumbent.get();
+            if (best != null && best.getDepth() <= goal.getDepth())
+                return;
+            if (incumbent.compareAndSet(best, goal))
+                return;
+        }
+    }
+
+    private class Worker implements Runnable {
+
+        private final int id;
+        private final NodeHeap open = new NodeHeap();
+        private final StateTable bestNodes = new StateTable();
+        private final ConcurrentLinkedQueue<Node[]> mailbox = new ConcurrentLinkedQueue<>();
+        private final Node[][] outgoing;
+        private final int[] outgoingCount;
+        private final Node[] children;
+        private int nodesExpanded;
+
+        Worker(int id) {
+            this.id = id;
+            this.outgoing = new Node[workers.length][];
+            this.outgoingCount = new int[workers.length];
+            this.children = new Node[puzzle.getMaxSuccessors()];
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                Node[] batch;
+                while ((batch = mailbox.poll()) != null) {
+                    receiveAll(batch);
+                    pending.decrementAndGet();
+                }
+                int expansions = 0;
+                while (expansions < EXPANSIONS_PER_ROUND && expandOne()) {
+                    expansions++;
+                }
+                flushOutgoing();
+                if (open.isEmpty() && !awaitWork())
+                    return;
+            }
+        }
+
+        /**
+         * Waits, counted as idle, until a batch arrives or every worker is
+         * idle with nothing in flight.
+         * @return true if a batch was taken, false if the search is over
+         */
+        private boolean awaitWork() {
+            pending.decrementAndGet();
+            for (int spins = 0; ; spins++) {
+                Node[] batch = mailbox.poll();
+                if (batch != null) {
+                    // Active again before the batch stops being counted
+                    pending.incrementAndGet();
+                    receiveAll(batch);
+                    pending.decrementAndGet();
+                    return true;
+                }
+                if (pending.get() == 0)
+                    return false;
+                if (spins < IDLE_SPINS)
+                    Thread.onSpinWait();
+                else
+                    Thread.yield();
+            }
+        }
+
+        /**
+         * Expands the best open Node, if it can still beat the incumbent.
+         * @return false if the open list has run out of useful Nodes
+         */
+        private boolean expandOne() {
+            Node current = open.poll();
+            if (current == null)
+                return false;
+            if (current.getPriority() >= bound()) {
+                // Nothing left here can beat the incumbent
+                discardOpen();
+                return false;
+            }
+            int childCount = current.expand(children);
+            nodesExpanded++;
+            for (int c = 0; c < childCount; c++) {
+                Node child = children[c];
+                if (child.isGoal()) {
+                    offerGoal(child);
+                    continue;
+                }
+                int w = owner(child);
+                if (w == id)
+                    receive(child);
+                else
+                    send(w, child);
+            }
+            return true;
+        }
+
+        /**
+         * Empties the open list through poll, so every Node leaves the heap
+         * with its slot cleared.
+         */
+        private void discardOpen() {
+            Node node;
+            do {
+                node = open.poll();
+            } while (node != null);
+        }
+
+        /**
+         * Opens node unless this worker already knows its state at no
+         * greater depth, or it cannot beat the incumbent.
+         */
+        void receive(Node node) {
+            if (node.getPriority() >= bound())
+                return;
+            Node known = bestNodes.get(node);
+            if (known == null) {
+                bestNodes.put(node);
+                open.add(node);
+            } else if (node.getDepth() < known.getDepth()) {
+                bestNodes.put(node);
+                open.replace(known, node);
+            }
+        }
+
+        private void receiveAll(Node[] batch) {
+            for (Node node : batch) {
+                if (node == null)
+                    break;
+                receive(node);
+            }
+        }
+
+        private void send(int w, Node node) {
+            if (outgoing[w] == null)
+                outgoing[w] = new Node[BATCH_SIZE];
+            outgoing[w][outgoingCount[w]++] = node;
+            if (outgoingCount[w] == BATCH_SIZE)
+                post(w);
+        }
+
+        private void flushOutgoing() {
+            for (int w = 0; w < outgoing.length; w++) {
+                if (outgoingCount[w] > 0)
+                    post(w);
+            }
+        }
+
+        /**
+         * Hands the buffered batch for worker w to its mailbox; a partly
+         * filled batch ends at its first null.
+         */
+        private void post(int w) {
+            pending.incrementAndGet();
+            workers[w].mailbox.offer(outgoing[w]);
+            outgoing[w] = null;
+            outgoingCount[w] = 0;
+        }
+    }
+}
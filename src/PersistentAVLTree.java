@@ -0,0 +1,347 @@
+// PersistentAVLTree class
+//
+// CONSTRUCTION: with no initializer, or PersistentAVLTree.empty( )
+//
+// ******************PUBLIC OPERATIONS*********************
+// PersistentAVLTree insert( x )   --> Return a tree that also holds x
+// PersistentAVLTree remove( x )   --> Return a tree without one x
+// PersistentAVLTree deleteMin( )  --> Return a tree without the smallest item
+// boolean contains( x )  --> Return true if x is present
+// Comparable findMin( )  --> Return smallest item
+// Comparable findMax( )  --> Return largest item
+// boolean isEmpty( )     --> Return true if empty; else false
+// int size( )            --> Return number of items
+// Iterator iterator( )   --> Iterate in sorted order
+// ******************ERRORS********************************
+// findMin and findMax throw RuntimeException on an empty tree
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Immutable AVL tree.  Every update copies only the nodes on the search
+ * path and returns a new tree that shares all other subtrees with the old
+ * one, so any version is an O( 1 ) snapshot that readers can traverse
+ * without locks while a writer goes on producing newer versions.  Balancing
+ * uses the same rules as AVLTree, with rotations building new nodes
+ * instead of relinking old ones.
+ * Note that all "matching" is based on the compareTo method.
+ */
+public final class PersistentAVLTree<AnyType extends Comparable<? super AnyType>> implements Iterable<AnyType>
+{
+    private static final PersistentAVLTree<?> EMPTY = new PersistentAVLTree<>( null );
+
+    /** The tree root. */
+    private final AvlNode<AnyType> root;
+
+    /**
+     * Construct an empty tree.
+     */
+    public PersistentAVLTree( )
+    {
+        this( null );
+    }
+
+    private PersistentAVLTree( AvlNode<AnyType> root )
+    {
+        this.root = root;
+    }
+
+    /**
+     * Return the shared empty tree.
+     */
+    @SuppressWarnings( "unchecked" )
+    public static <AnyType extends Comparable<? super AnyType>> PersistentAVLTree<AnyType> empty( )
+    {
+        return (PersistentAVLTree<AnyType>) EMPTY;
+    }
+
+    /**
+     * Insert into the tree; duplicates are allowed.
+     * @param element the item to insert.
+     * @return the new version of the tree; this version is unchanged.
+     */
+    public PersistentAVLTree<AnyType> insert( AnyType element )
+    {
+        return new PersistentAVLTree<>( insert( element, root ) );
+    }
+
+    /**
+     * Remove one item equal to element.
+     * @param element the item to remove.
+     * @return the new version of the tree, or this tree if element is absent.
+     */
+    public PersistentAVLTree<AnyType> remove( AnyType element )
+    {
+        AvlNode<AnyType> newRoot = remove( element, root );
+        return newRoot == root ? this : new PersistentAVLTree<>( newRoot );
+    }
+
+    /**
+     * Remove the smallest item.
+     * @return the new version of the tree, or this tree if it is empty.
+     */
+    public PersistentAVLTree<AnyType> deleteMin( )
+    {
+        return root == null ? this : new PersistentAVLTree<>( deleteMin( root ) );
+    }
+
+    /**
+     * Find an item in the tree.
+     * @param element the item to search for.
+     * @return true if x is found.
+     */
+    public boolean contains( AnyType element )
+    {
+        AvlNode<AnyType> node = root;
+        while( node != null )
+        {
+            int compareResult = element.compareTo( node.element );
+
+            if( compareResult < 0 )
+                node = node.left;
+            else if( compareResult > 0 )
+                node = node.right;
+            else
+                return true;    // Match
+        }
+        return false;   // No match
+    }
+
+    /**
+     * Find the smallest item in the tree.
+     * @return smallest item.
+     */
+    public AnyType findMin( )
+    {
+        if( isEmpty( ) )
+            throw new RuntimeException( );
+        AvlNode<AnyType> node = root;
+        while( node.left != null )
+            node = node.left;
+        return node.element;
+    }
+
+    /**
+     * Find the largest item in the tree.
+     * @return the largest item.
+     */
+    public AnyType findMax( )
+    {
+        if( isEmpty( ) )
+            throw new RuntimeException( );
+        AvlNode<AnyType> node = root;
+        while( node.right != null )
+            node = node.right;
+        return node.element;
+    }
+
+    /**
+     * Test if the tree is logically empty.
+     * @return true if empty, false otherwise.
+     */
+    public boolean isEmpty( )
+    {
+        return root == null;
+    }
+
+    /**
+     * Return the number of items in the tree.
+     */
+    public int size( )
+    {
+        return size( root );
+    }
+
+    /**
+     * Iterate over the items in sorted order.  Since the version never
+     * changes, the walk is always consistent.
+     */
+    @Override
+    public Iterator<AnyType> iterator( )
+    {
+        return new Iterator<AnyType>( )
+        {
+            @SuppressWarnings( { "unchecked", "rawtypes" } )
+            private final AvlNode<AnyType>[] stack = new AvlNode[ height( root ) + 1 ];
+            private int top = pushLeft( root, 0 );
+
+            private int pushLeft( AvlNode<AnyType> node, int top )
+            {
+                for( ; node != null; node = node.left )
+                    stack[ top++ ] = node;
+                return top;
+            }
+
+            @Override
+            public boolean hasNext( )
+            {
+                return top > 0;
+            }
+
+            @Override
+            public AnyType next( )
+            {
+                if( top == 0 )
+                    throw new NoSuchElementException( );
+                AvlNode<AnyType> node = stack[ --top ];
+                top = pushLeft( node.right, top );
+                return node.element;
+            }
+        };
+    }
+
+    /**
+     * Internal method to insert into a subtree, copying the search path.
+     * @return the root of the new version of the subtree.
+     */
+    private static <AnyType extends Comparable<? super AnyType>> AvlNode<AnyType> insert(
+            AnyType element, AvlNode<AnyType> node )
+    {
+        if( node == null )
+            return new AvlNode<>( element, null, null );
+
+        if( element.compareTo( node.element ) < 0 )
+            return balance( node.element, insert( element, node.left ), node.right );
+        else
+            return balance( node.element, node.left, insert( element, node.right ) );
+    }
+
+    /**
+     * Internal method to remove from a subtree, copying the search path.
+     * @return the root of the new version of the subtree, or node itself
+     * if element was not found.
+     */
+    private static <AnyType extends Comparable<? super AnyType>> AvlNode<AnyType> remove(
+            AnyType element, AvlNode<AnyType> node )
+    {
+        if( node == null )
+            return null;   // Item not found; do nothing
+
+        int compareResult = element.compareTo( node.element );
+
+        if( compareResult < 0 )
+        {
+            AvlNode<AnyType> left = remove( element, node.left );
+            return left == node.left ? node : balance( node.element, left, node.right );
+        }
+        if( compareResult > 0 )
+        {
+            AvlNode<AnyType> right = remove( element, node.right );
+            return right == node.right ? node : balance( node.element, node.left, right );
+        }
+        if( node.left == null )
+            return node.right;
+        if( node.right == null )
+            return node.left;
+        // Two children: the successor takes this node's place
+        AvlNode<AnyType> successor = node.right;
+        while( successor.left != null )
+            successor = successor.left;
+        return balance( successor.element, node.left, deleteMin( node.right ) );
+    }
+
+    /**
+     * Internal method to remove the smallest item of a non-empty subtree.
+     * @return the root of the new version of the subtree.
+     */
+    private static <AnyType> AvlNode<AnyType> deleteMin( AvlNode<AnyType> node )
+    {
+        if( node.left == null )
+            return node.right;
+        return balance( node.element, deleteMin( node.left ), node.right );
+    }
+
+    private static final int ALLOWED_IMBALANCE = 1;
+
+    /**
+     * Build the node ( left, element, right ), where the two subtrees are
+     * within two of each other in height, rotating as AVLTree.balance does.
+     * @return the root of the balanced subtree.
+     */
+    private static <AnyType> AvlNode<AnyType> balance( AnyType element, AvlNode<AnyType> left, AvlNode<AnyType> right )
+    {
+        if( height( left ) - height( right ) > ALLOWED_IMBALANCE )
+        {
+            if( height( left.left ) >= height( left.right ) )
+                return rightRotation( element, left, right );
+            return doubleRightRotation( element, left, right );
+        }
+        if( height( right ) - height( left ) > ALLOWED_IMBALANCE )
+        {
+            if( height( right.right ) >= height( right.left ) )
+                return leftRotation( element, left, right );
+            return doubleLeftRotation( element, left, right );
+        }
+        return new AvlNode<>( element, left, right );
+    }
+
+    /**
+     * Single rotation for case 1: the left child becomes the root.
+     */
+    private static <AnyType> AvlNode<AnyType> rightRotation( AnyType element, AvlNode<AnyType> left, AvlNode<AnyType> right )
+    {
+        return new AvlNode<>( left.element, left.left, new AvlNode<>( element, left.right, right ) );
+    }
+
+    /**
+     * Single rotation for case 4: the right child becomes the root.
+     */
+    private static <AnyType> AvlNode<AnyType> leftRotation( AnyType element, AvlNode<AnyType> left, AvlNode<AnyType> right )
+    {
+        return new AvlNode<>( right.element, new AvlNode<>( element, left, right.left ), right.right );
+    }
+
+    /**
+     * Double rotation for case 2: the left child's right child becomes the root.
+     */
+    private static <AnyType> AvlNode<AnyType> doubleRightRotation( AnyType element, AvlNode<AnyType> left, AvlNode<AnyType> right )
+    {
+        AvlNode<AnyType> pivot = left.right;
+        return new AvlNode<>( pivot.element,
+                new AvlNode<>( left.element, left.left, pivot.left ),
+                new AvlNode<>( element, pivot.right, right ) );
+    }
+
+    /**
+     * Double rotation for case 3: the right child's left child becomes the root.
+     */
+    private static <AnyType> AvlNode<AnyType> doubleLeftRotation( AnyType element, AvlNode<AnyType> left, AvlNode<AnyType> right )
+    {
+        AvlNode<AnyType> pivot = right.left;
+        return new AvlNode<>( pivot.element,
+                new AvlNode<>( element, left, pivot.left ),
+                new AvlNode<>( right.element, pivot.right, right.right ) );
+    }
+
+    /**
+     * Return the height of node, or -1, if null.
+     */
+    private static int height( AvlNode<?> node )
+    {
+        return node == null ? -1 : node.height;
+    }
+
+    private static int size( AvlNode<?> node )
+    {
+        return node == null ? 0 : node.size;
+    }
+
+    private static final class AvlNode<AnyType>
+    {
+        AvlNode( AnyType theElement, AvlNode<AnyType> left, AvlNode<AnyType> right )
+        {
+            element = theElement;
+            this.left = left;
+            this.right = right;
+            height = Math.max( height( left ), height( right ) ) + 1;
+            size = size( left ) + size( right ) + 1;
+        }
+
+        final AnyType           element;      // The data in the node
+        final AvlNode<AnyType>  left;         // Left child
+        final AvlNode<AnyType>  right;        // Right child
+        final int               height;       // Height
+        final int               size;         // Number of nodes in this subtree
+    }
+}
@@ -3,7 +3,6 @@ import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Hashtable;
 
 /**
  * This is the class for representing a particular ParkingLot puzzle.
@@ -29,6 +28,14 @@ public class Puzzle {
     private int carSize[];
     private boolean carOrient[];
     private int gridSize;
+    private StateCodec codec;
+    private Bitboard bitboard;
+    private int maxSuccessors;
+    private int initPositions[];
+    private Heuristic heuristic;
+
+    /** Expansions between checks of a search deadline. */
+    private static final int DEADLINE_CHECK_INTERVAL = 1024;
 
     /**
      * The main constructor for constructing a puzzle.  You probably
@@ -58,6 +65,7 @@ public class Puzzle {
         if (numCars <= 0) {
             throw new IllegalArgumentException("Each puzzle must have a positive number of cars");
         }
+        codec = new StateCodec(gridSize, numCars);
         carOrient = new boolean[numCars];
         carSize = new int[numCars];
         fixedPos = new int[numCars];
@@ -97,10 +105,15 @@ public class Puzzle {
 
         }
 
-        /*
-        stepsTo is hardcoded to 0
-         */
-        initNode = new Node(null, "", this, varPos, "Initial", 0, 0);
+        // Every car can reach each other position of its lane, and the goal car can also exit
+        maxSuccessors = 1;
+        for (int v = 0; v < numCars; v++) {
+            maxSuccessors += gridSize - carSize[v];
+        }
+        bitboard = new Bitboard(this);
+        heuristic = new BlockingChainHeuristic(this);
+        initPositions = varPos;
+        initNode = newInitNode();
         //System.out.println(initNode.toString());
     }
 
@@ -219,122 +232,250 @@ public class Puzzle {
         return gridSize;
     }
 
-    public Node getInitNode() {
-        return initNode;
+    /**
+     * Returns the codec used to pack car positions into Node states.
+     */
+    public StateCodec getCodec() {
+        return codec;
     }
 
+    /**
+     * Returns the precomputed cell masks used for Node occupancy.
+     */
+    public Bitboard getBitboard() {
+        return bitboard;
+    }
 
-    public void aStarSolve(boolean doPrint) {
-        System.out.println("========================");
-        System.out.println(initNode.toString());
+    /**
+     * Returns an upper bound on the number of children of any Node, which
+     * is the buffer size needed by Node.expand(Node[]).
+     */
+    public int getMaxSuccessors() {
+        return maxSuccessors;
+    }
 
-        Node solution = null;
+    /**
+     * Returns the estimate of remaining moves that Nodes of this puzzle use.
+     */
+    public Heuristic getHeuristic() {
+        return heuristic;
+    }
 
+    /**
+     * Changes the estimate of remaining moves, for instance to compare
+     * heuristics on the same puzzle.  Must not be called while a search of
+     * this puzzle is running.
+     * @param heuristic an estimate that never exceeds the true number of moves
+     */
+    public void setHeuristic(Heuristic heuristic) {
+        this.heuristic = heuristic;
+        initNode = newInitNode();
+    }
 
-        Node[] rootList = initNode.expand();
-        int nodesExpanded = 1;
+    public Node getInitNode() {
+        return initNode;
+    }
 
-        AVLTree<Node> priorityQueue = new AVLTree<>();
-        priorityQueue.insert(initNode);
+    /**
+     * Returns a new root Node for the initial state.  Nodes carry search
+     * bookkeeping such as their heap slot, so searches that may run at the
+     * same time each start from their own root.
+     */
+    Node newInitNode() {
+        return new Node(this, initPositions);
+    }
 
 
-        for (Node i : rootList) {
-            priorityQueue.insert(i);
-        }
+    public void aStarSolve(boolean doPrint) {
+        aStarSolve(doPrint, new AvlOpenList());
+    }
 
-        int hashKey = 0;
-        Hashtable<Integer, Node> nodesHashTable = new Hashtable<>();
+    /**
+     * A* search using the given open list, so that different priority
+     * queues can be compared on the same puzzle.
+     * @param doPrint     print the whole solution path rather than the final state
+     * @param priorityQueue empty open list to search with
+     */
+    public void aStarSolve(boolean doPrint, OpenList priorityQueue) {
+        System.out.println("========================");
+        System.out.println(initNode.toString());
+        report(aStarSearch(priorityQueue, 0, 0), doPrint);
+    }
 
-        while (solution == null) {
-            if (priorityQueue.findMin().isGoal()) {
-                solution = priorityQueue.findMin();
-                break;
-            } else {
-                Node[] childList = priorityQueue.findMin().expand();
-                nodesExpanded++;
-                priorityQueue.deleteMin();
-                for (Node newChild : childList) {
-                    if (nodesHashTable.containsKey(newChild.hashCode())) {
-                        Node compareNode = nodesHashTable.get(newChild.hashCode());
-                        if (newChild.compareTo(compareNode) < 0) {
-                            nodesHashTable.remove(compareNode.hashCode());
-                            nodesHashTable.put(newChild.hashCode(), newChild);
-                            priorityQueue.insert(newChild);
-                        }
-                    } else {
-                        nodesHashTable.put(newChild.hashCode(), newChild);
-                        priorityQueue.insert(newChild);
-                    }
-                }
-                }
+    /**
+     * A* search that prints nothing and can be cut short, for running
+     * many searches side by side.  Each call starts from a fresh root.
+     * @param priorityQueue empty open list to search with
+     * @param timeoutMillis give up after this long; 0 or less for no limit
+     * @param nodeBudget    give up after expanding this many Nodes; 0 or less for no limit
+     * @return the outcome of the search
+     */
+    public SolveResult aStarSearch(OpenList priorityQueue, long timeoutMillis, int nodeBudget) {
+        long start = System.nanoTime();
+        long timeoutNanos = timeoutMillis > 0 ? timeoutMillis * 1_000_000L : Long.MAX_VALUE;
+        int budget = nodeBudget > 0 ? nodeBudget : Integer.MAX_VALUE;
+        Node root = newInitNode();
+
+        int nodesExpanded = 0;
+        Node[] children = new Node[maxSuccessors];
+
+        // Best Node found so far for every generated state, keyed by the
+        // packed state itself.  A Node taken off the open list that is no
+        // longer the best for its state has been superseded and is skipped.
+        StateTable bestNodes = new StateTable();
+        bestNodes.put(root);
+        priorityQueue.add(root);
+
+        while (!priorityQueue.isEmpty()) {
+            Node current = priorityQueue.poll();
+            if (bestNodes.get(current) != current) {
+                continue;
             }
-
-            if (doPrint) {
-
-                System.out.print("\n\nSOLUTION  of Depth: " + solution.getDepth());
-                System.out.println(" Total Nodes Expanded: " + nodesExpanded + "\n");
-                printSolution(solution);
-//        System.out.println(toString());
+            if (current.isGoal()) {
+                return new SolveResult(name, SolveResult.Status.SOLVED, current, nodesExpanded, System.nanoTime() - start);
+            }
+            if (nodesExpanded >= budget) {
+                return new SolveResult(name, SolveResult.Status.BUDGET_EXCEEDED, null, nodesExpanded, System.nanoTime() - start);
+            }
+            if (nodesExpanded % DEADLINE_CHECK_INTERVAL == 0 && System.nanoTime() - start > timeoutNanos) {
+                return new SolveResult(name, SolveResult.Status.TIMED_OUT, null, nodesExpanded, System.nanoTime() - start);
             }
-            else{
-                System.out.println("SOLUTION of depth: " + solution.getDepth());
-                System.out.println("Total Nodes Expanded: " + nodesExpanded + "\n");
-                System.out.println(solution.toString());
+            int childCount = current.expand(children);
+            nodesExpanded++;
+            for (int c = 0; c < childCount; c++) {
+                Node newChild = children[c];
+                Node known = bestNodes.get(newChild);
+                if (known == null) {
+                    bestNodes.put(newChild);
+                    priorityQueue.add(newChild);
+                } else if (newChild.getDepth() < known.getDepth()) {
+                    // Cheaper path to a known state: it is (re)opened with the
+                    // lower cost, replacing the queued entry where the list can.
+                    bestNodes.put(newChild);
+                    priorityQueue.replace(known, newChild);
+                }
             }
         }
+        return new SolveResult(name, SolveResult.Status.NO_SOLUTION, null, nodesExpanded, System.nanoTime() - start);
+    }
 
+    /**
+     * Prints the outcome of a search in the format every solver uses.
+     * @param doPrint print the whole solution path rather than the final state
+     */
+    private void report(SolveResult result, boolean doPrint) {
+        if (!result.isSolved()) {
+            System.out.println("NO SOLUTION found after expanding " + result.getNodesExpanded() + " nodes\n");
+            return;
+        }
 
+        Node solution = result.getSolution();
+        if (doPrint) {
 
+            System.out.print("\n\nSOLUTION  of Depth: " + solution.getDepth());
+            System.out.println(" Total Nodes Expanded: " + result.getNodesExpanded() + "\n");
+            printSolution(solution);
+//        System.out.println(toString());
+        }
+        else{
+            System.out.println("SOLUTION of depth: " + solution.getDepth());
+            System.out.println("Total Nodes Expanded: " + result.getNodesExpanded() + "\n");
+            System.out.println(solution.toString());
+        }
+    }
 
-
-    public void solve(boolean doPrint) {
+    /**
+     * A* spread over several threads with ParallelAStar; the solution has
+     * the same depth as aStarSolve finds.
+     * @param doPrint print the whole solution path rather than the final state
+     * @param threads number of worker threads
+     */
+    public void parallelAStarSolve(boolean doPrint, int threads) throws InterruptedException {
         System.out.println("========================");
         System.out.println(initNode.toString());
 
-        Node solution = null;
-
-        Node[] rootList = initNode.expand();
-
-        NodeLinkedList nodeLinkedList = new NodeLinkedList(initNode);
-        for (Node i : rootList) {
-            nodeLinkedList.add(i);
-        }
-
-        int hashKey = 0;
-        Hashtable<Integer, Integer> nodesHashTable = new Hashtable<>();
+        long start = System.nanoTime();
+        ParallelAStar search = new ParallelAStar(this, threads);
+        Node solution = search.solve();
+        SolveResult.Status status = solution == null ? SolveResult.Status.NO_SOLUTION : SolveResult.Status.SOLVED;
+        report(new SolveResult(name, status, solution, search.getNodesExpanded(), System.nanoTime() - start), doPrint);
+    }
 
-        while (solution == null) {
+    public void solve(boolean doPrint) {
+        System.out.println("========================");
+        System.out.println(initNode.toString());
+        report(breadthFirstSearch(0, 0), doPrint);
+    }
 
-            for (int i = 0; i < nodeLinkedList.getSize() - 1; i++) {
-                if (nodeLinkedList.find(i).isGoal()) {
-                    solution = nodeLinkedList.find(i);
-                    break;
-                }
-                // Check if Node hash is in hash table and if not, add to nodes ArrayList
-                else{
-                    Node[] childList = nodeLinkedList.find(i).expand();
-                    for (Node newChild : childList){
-                        if (!nodesHashTable.contains(newChild.hashCode())) {
-                            nodeLinkedList.add(newChild);
-                            nodesHashTable.put(hashKey, newChild.hashCode());
-                            hashKey++;
-                        }
-                    }
+    /**
+     * Breadth first search that prints nothing and can be cut short.
+     * Each call starts from a fresh root.
+     * @param timeoutMillis give up after this long; 0 or less for no limit
+     * @param nodeBudget    give up after expanding this many Nodes; 0 or less for no limit
+     * @return the outcome of the search
+     */
+    public SolveResult breadthFirstSearch(long timeoutMillis, int nodeBudget) {
+        long start = System.nanoTime();
+        long timeoutNanos = timeoutMillis > 0 ? timeoutMillis * 1_000_000L : Long.MAX_VALUE;
+        int budget = nodeBudget > 0 ? nodeBudget : Integer.MAX_VALUE;
+        Node root = newInitNode();
+
+        int nodesExpanded = 0;
+
+        NodeLinkedList frontier = new NodeLinkedList(root);
+        Node[] children = new Node[maxSuccessors];
+
+        StateTable visited = new StateTable();
+        visited.add(root);
+
+        // Breadth first: each Node is taken off the front of the queue exactly once
+        // and its unseen children are appended to the back.
+        while (!frontier.isEmpty()) {
+            Node current = frontier.poll();
+            if (current.isGoal()) {
+                return new SolveResult(name, SolveResult.Status.SOLVED, current, nodesExpanded, System.nanoTime() - start);
+            }
+            if (nodesExpanded >= budget) {
+                return new SolveResult(name, SolveResult.Status.BUDGET_EXCEEDED, null, nodesExpanded, System.nanoTime() - start);
+            }
+            if (nodesExpanded % DEADLINE_CHECK_INTERVAL == 0 && System.nanoTime() - start > timeoutNanos) {
+                return new SolveResult(name, SolveResult.Status.TIMED_OUT, null, nodesExpanded, System.nanoTime() - start);
+            }
+            int childCount = current.expand(children);
+            nodesExpanded++;
+            // Only states that have never been seen before join the frontier
+            for (int c = 0; c < childCount; c++) {
+                Node newChild = children[c];
+                if (visited.add(newChild)) {
+                    frontier.add(newChild);
                 }
             }
-
         }
+        return new SolveResult(name, SolveResult.Status.NO_SOLUTION, null, nodesExpanded, System.nanoTime() - start);
+    }
 
-        if (doPrint){
-        System.out.print("\n\nSOLUTION  of Depth: " + solution.getDepth());
-        System.out.println(" Total Nodes Expanded: " + nodeLinkedList.getSize() + "\n");
-        printSolution(solution);}
-        else{
-            System.out.println("SOLUTION of depth: " + solution.getDepth());
-            System.out.println("Total Nodes Expanded: " + nodeLinkedList.getSize() + "\n");
-            System.out.println(solution.toString());
-        }
+    /**
+     * Breadth first search from the initial state and from every goal
+     * state at once, see BidirectionalSearch.  The solution is as short as
+     * the one solve finds.
+     * @param doPrint print the whole solution path rather than the final state
+     */
+    public void bidirectionalSolve(boolean doPrint) {
+        System.out.println("========================");
+        System.out.println(initNode.toString());
+        report(new BidirectionalSearch(this).solve(0, 0), doPrint);
+    }
 
+    /**
+     * Iterative deepening A* with IdaStarSearch, whose memory grows with
+     * the solution depth rather than the number of states seen.  The
+     * solution is as short as the one aStarSolve finds.
+     * @param doPrint print the whole solution path rather than the final state
+     */
+    public void idaStarSolve(boolean doPrint) {
+        System.out.println("========================");
+        System.out.println(initNode.toString());
+        report(new IdaStarSearch(this).solve(0, 0), doPrint);
     }
 
     public void printInitialNode(){
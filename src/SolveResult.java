@@ -0,0 +1,98 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The outcome of one search of a Puzzle: how it ended, the solution if
+ * one was found, and what the search cost.
+ */
+public class SolveResult {
+
+    /**
+     * How a search ended.
+     */
+    public enum Status {
+        /** A solution was found. */
+        SOLVED,
+        /** The whole reachable state space was searched without reaching the goal. */
+        NO_SOLUTION,
+        /** The deadline passed first. */
+        TIMED_OUT,
+        /** The node budget ran out first. */
+        BUDGET_EXCEEDED
+    }
+
+    private final String puzzleName;
+    private final Status status;
+    private final Node solution;
+    private final int nodesExpanded;
+    private final long wallNanos;
+
+    /**
+     * @param puzzleName    name of the puzzle searched
+     * @param status        how the search ended
+     * @param solution      the goal Node reached, or null unless status is SOLVED
+     * @param nodesExpanded number of Nodes expanded
+     * @param wallNanos     elapsed time of the search in nanoseconds
+     */
+    SolveResult(String puzzleName, Status status, Node solution, int nodesExpanded, long wallNanos) {
+        this.puzzleName = puzzleName;
+        this.status = status;
+        this.solution = solution;
+        this.nodesExpanded = nodesExpanded;
+        this.wallNanos = wallNanos;
+    }
+
+    public String getPuzzleName() {
+        return puzzleName;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public boolean isSolved() {
+        return status == Status.SOLVED;
+    }
+
+    /**
+     * Returns the goal Node, whose parent chain is the solution, or null.
+     */
+    public Node getSolution() {
+        return solution;
+    }
+
+    /**
+     * Returns the number of moves in the solution, or -1 if there is none.
+     */
+    public int getDepth() {
+        return solution == null ? -1 : solution.getDepth();
+    }
+
+    public int getNodesExpanded() {
+        return nodesExpanded;
+    }
+
+    public long getWallNanos() {
+        return wallNanos;
+    }
+
+    /**
+     * Returns the Nodes of the solution from the initial state to the goal,
+     * or an empty list if there is no solution.
+     */
+    public List<Node> getPath() {
+        List<Node> path = new ArrayList<>();
+        for (Node n = solution; n != null; n = n.getParent()) {
+            path.add(n);
+        }
+        Collections.reverse(path);
+        return path;
+    }
+
+    public String toString() {
+        String outcome = isSolved() ? "depth " + getDepth() + " " + solution.getHistory() : status.toString();
+        return String.format("%s: %s, %d nodes expanded, %.1f ms",
+                puzzleName, outcome, nodesExpanded, wallNanos / 1e6);
+    }
+}
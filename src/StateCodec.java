@@ -0,0 +1,102 @@
+/**
+ * Packs the variable position of every car of a puzzle into at most two
+ * longs.  Each car gets a fixed-width field just wide enough to hold any
+ * position on the grid; the first cars go in the low word and any cars
+ * that do not fit there go in the high word, which stays zero for the
+ * usual 6x6 puzzles.
+ */
+public class StateCodec {
+
+    private static final int WORD_BITS = 64;
+
+    private final int numCars;
+    private final int bitsPerCar;
+    private final int carsPerWord;
+    private final long fieldMask;
+
+    /**
+     * @param gridSize the size of one side of the puzzle grid
+     * @param numCars  the number of cars on the puzzle
+     */
+    public StateCodec(int gridSize, int numCars) {
+        this.numCars = numCars;
+        this.bitsPerCar = Math.max(1, Integer.SIZE - Integer.numberOfLeadingZeros(gridSize - 1));
+        this.carsPerWord = WORD_BITS / bitsPerCar;
+        this.fieldMask = (1L << bitsPerCar) - 1;
+        if (numCars > 2 * carsPerWord) {
+            throw new IllegalArgumentException("Puzzle has too many cars to pack into a state");
+        }
+    }
+
+    /**
+     * Packs the cars that live in the low word.
+     * @param varPos variable position of every car
+     */
+    public long encodeLow(int[] varPos) {
+        return encode(varPos, 0, Math.min(numCars, carsPerWord));
+    }
+
+    /**
+     * Packs the cars that live in the high word.
+     * @param varPos variable position of every car
+     */
+    public long encodeHigh(int[] varPos) {
+        return encode(varPos, carsPerWord, numCars);
+    }
+
+    /**
+     * Returns true if car v is stored in the high word.
+     */
+    public boolean inHighWord(int v) {
+        return v >= carsPerWord;
+    }
+
+    /**
+     * Returns the variable position of car v in the packed state.
+     */
+    public int position(long low, long high, int v) {
+        return inHighWord(v) ? field(high, v - carsPerWord) : field(low, v);
+    }
+
+    /**
+     * Returns the word holding car v (low or high) with its position
+     * replaced by pos.
+     */
+    public long withPosition(long word, int v, int pos) {
+        int shift = shift(inHighWord(v) ? v - carsPerWord : v);
+        return (word & ~(fieldMask << shift)) | ((long) pos << shift);
+    }
+
+    /**
+     * Unpacks every car position into varPos.
+     */
+    public void decode(long low, long high, int[] varPos) {
+        for (int v = 0; v < numCars; v++) {
+            varPos[v] = position(low, high, v);
+        }
+    }
+
+    /**
+     * Hash of a packed state.
+     */
+    public static int hash(long low, long high) {
+        long h = low * 0x9E3779B97F4A7C15L + high;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private long encode(int[] varPos, int from, int to) {
+        long word = 0;
+        for (int v = from; v < to; v++) {
+            word |= (long) varPos[v] << shift(v - from);
+        }
+        return word;
+    }
+
+    private int field(long word, int index) {
+        return (int) ((word >>> shift(index)) & fieldMask);
+    }
+
+    private int shift(int index) {
+        return index * bitsPerCar;
+    }
+}
@@ -0,0 +1,137 @@
+import java.util.Arrays;
+
+/**
+ * Open addressing hash table of Nodes keyed by the puzzle state they
+ * represent (see Node.equals), so two Nodes that reach the same car layout
+ * share one slot.  Lookups are expected constant time, do not box, and
+ * are not synchronized.
+ */
+public class StateTable {
+
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    private Node[] slots;
+    private int size;
+    private int threshold;
+
+    /**
+     * Construct an empty table.
+     */
+    public StateTable() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Construct an empty table sized for the expected number of states.
+     * @param expectedSize number of states expected to be stored
+     */
+    public StateTable(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(expectedSize, 8) * 2 - 1) * 2;
+        allocate(capacity);
+    }
+
+    /**
+     * Adds node if no Node with the same state is already present.
+     * @param node the Node to add
+     * @return true if node was added, false if its state was already present
+     */
+    public boolean add(Node node) {
+        int slot = find(node);
+        if (slots[slot] != null) {
+            return false;
+        }
+        insertAt(slot, node);
+        return true;
+    }
+
+    /**
+     * Stores node, replacing any Node with the same state.
+     * @param node the Node to store
+     * @return the Node previously stored for this state, or null
+     */
+    public Node put(Node node) {
+        int slot = find(node);
+        Node previous = slots[slot];
+        if (previous != null) {
+            slots[slot] = node;
+            return previous;
+        }
+        insertAt(slot, node);
+        return null;
+    }
+
+    /**
+     * Returns the stored Node with the same state as node.
+     * @param node a Node describing the state to look up
+     * @return the stored Node, or null if the state is not present
+     */
+    public Node get(Node node) {
+        return slots[find(node)];
+    }
+
+    public boolean contains(Node node) {
+        return get(node) != null;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(slots, null);
+        size = 0;
+    }
+
+    /**
+     * Linear probe for node's state.
+     * @return the slot holding the state, or the empty slot where it belongs
+     */
+    private int find(Node node) {
+        int mask = slots.length - 1;
+        int slot = mix(node.hashCode()) & mask;
+        Node current;
+        while ((current = slots[slot]) != null && !current.equals(node)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void insertAt(int slot, Node node) {
+        slots[slot] = node;
+        if (++size > threshold) {
+            rehash(slots.length * 2);
+        }
+    }
+
+    private void rehash(int capacity) {
+        Node[] old = slots;
+        allocate(capacity);
+        int mask = capacity - 1;
+        for (Node node : old) {
+            if (node != null) {
+                int slot = mix(node.hashCode()) & mask;
+                while (slots[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                slots[slot] = node;
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        slots = new Node[capacity];
+        threshold = capacity / 2;
+    }
+
+    /**
+     * Spreads the bits of a state hash so nearby states do not cluster.
+     */
+    private static int mix(int hash) {
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -1,5 +1,6 @@
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.util.List;
 
 /**
  * The main begins by reading in
@@ -10,7 +11,7 @@ import java.io.IOException;
 
 public class TheMain {
 
-    public static void main(String[] args) throws FileNotFoundException, IOException {
+    public static void main(String[] args) throws FileNotFoundException, IOException, InterruptedException {
         // read all the puzzles in file.  Only the first few are solvable without additional strategies
         Puzzle[] puzzles = Puzzle.readPuzzlesFromFile("jamsAll.txt");
         //int num_puzzles = puzzles.length;
@@ -33,10 +34,25 @@ public class TheMain {
         puzzles[5].aStarSolve(doNotPrint);
         puzzles[5].solve(doNotPrint);
 
+        System.out.println("\n---------------Open list comparison: AVLTree, NodeHeap, then BucketQueue------------- ");
+        puzzles[5].aStarSolve(doNotPrint, new AvlOpenList());
+        puzzles[5].aStarSolve(doNotPrint, new NodeHeap());
+        puzzles[5].aStarSolve(doNotPrint, new BucketQueue());
 
-        for (int i = 0; i < num_puzzles; i++){
-            puzzles[i].aStarSolve(doNotPrint);
+        System.out.println("\n---------------Parallel A* (HDA*) on the same puzzle------------- ");
+        puzzles[5].parallelAStarSolve(doNotPrint, Runtime.getRuntime().availableProcessors());
+
+        System.out.println("\n---------------IDA* on the same puzzle------------- ");
+        puzzles[5].idaStarSolve(doNotPrint);
+
+
+        System.out.println("\n---------------All puzzles solved concurrently by BatchSolver------------- ");
+        long start = System.nanoTime();
+        List<SolveResult> results = new BatchSolver().solveAll(puzzles, 0, num_puzzles);
+        for (SolveResult result : results) {
+            System.out.println(result);
         }
+        System.out.printf("Batch of %d puzzles took %.1f ms%n", results.size(), (System.nanoTime() - start) / 1e6);
     }
     }
 